@@ -0,0 +1,205 @@
+package me.clarius.sdk.solum.example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import me.clarius.sdk.Button;
+import me.clarius.sdk.Connection;
+import me.clarius.sdk.ImageFormat;
+import me.clarius.sdk.ImagingState;
+import me.clarius.sdk.PosInfo;
+import me.clarius.sdk.PowerDown;
+import me.clarius.sdk.ProcessedImageInfo;
+import me.clarius.sdk.RawImageInfo;
+import me.clarius.sdk.Solum;
+import me.clarius.sdk.SpectralImageInfo;
+
+/**
+ * Drive the image converter with the synthetic probe well above the probe frame rate, on a device.
+ * <p>
+ * The converter may drop frames under this load, but it must keep delivering, account for every frame and
+ * return its bitmaps to the pool. Both synthetic frames and frames replayed from a recording are used.
+ */
+
+@RunWith(AndroidJUnit4.class)
+public class SyntheticProbeSoakTest {
+    private static final double FRAME_RATE = 3 * 30;
+    private static final long SOAK_SECONDS = 20;
+    private static final long MAX_POOLED_BYTES = 32L * 1024 * 1024;
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final int RECORDED_FRAMES = 30;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void convertsBurstyFramesAtThreeTimesTheFrameRate() throws InterruptedException {
+        final Soak soak = new Soak();
+        soak.run(SOAK_SECONDS);
+        soak.check();
+    }
+
+    @Test
+    public void convertsReplayedJpegFramesAtThreeTimesTheFrameRate() throws IOException, InterruptedException {
+        final File directory = new File(folder.getRoot(), "recording");
+        record(directory);
+        try (RecordingReader recording = new RecordingReader(directory)) {
+            assertEquals(RECORDED_FRAMES, recording.getFrameCount());
+            final Soak soak = new Soak();
+            soak.probe.setReplay(recording);
+            soak.run(SOAK_SECONDS / 2);
+            soak.check();
+            assertEquals(0, soak.wrongFrames.get());
+        }
+    }
+
+    // Record JPEG frames as the app does when the probe streams compressed images.
+    private static void record(File directory) throws IOException {
+        final Random random = new Random(42);
+        final int[] pixels = new int[WIDTH * HEIGHT];
+        final Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        final ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        try (FrameRecorder recorder = new FrameRecorder(directory, 16L * 1024 * 1024, RECORDED_FRAMES)) {
+            for (int i = 0; i < RECORDED_FRAMES; ++i) {
+                for (int p = 0; p < pixels.length; ++p) {
+                    final int v = random.nextInt(256);
+                    pixels[p] = 0xff000000 | v << 16 | v << 8 | v;
+                }
+                bitmap.setPixels(pixels, 0, WIDTH, 0, 0, WIDTH, HEIGHT);
+                jpeg.reset();
+                bitmap.compress(Bitmap.CompressFormat.JPEG, 80, jpeg);
+                final ByteBuffer data = ByteBuffer.wrap(jpeg.toByteArray());
+                recorder.record(new FrameRecorder.Header(i * 33_000_000L,
+                        RecordingFormats.toCode(ImageFormat.Jpeg), WIDTH, HEIGHT, 32, 100, WIDTH * 50.0, 0,
+                        data.remaining()), data);
+            }
+        }
+        bitmap.recycle();
+    }
+
+    // A synthetic probe feeding a parallel image converter, with the checks of every soak.
+    private static final class Soak {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final BitmapPool bitmapPool = new BitmapPool(MAX_POOLED_BYTES);
+        final AtomicLong lastTimestamp = new AtomicLong(Long.MIN_VALUE);
+        final AtomicLong outOfOrder = new AtomicLong();
+        final AtomicLong wrongFrames = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final ImageConverter converter;
+        final SyntheticProbe probe;
+
+        Soak() {
+            converter = new ImageConverter(executor, ImageConverter.Mode.PARALLEL, bitmapPool,
+                    new ImageConverter.Callback() {
+                        @Override
+                        public void onResult(Bitmap bitmap, ProcessedImageInfo info) {
+                            if (lastTimestamp.getAndSet(info.tm) >= info.tm) {
+                                outOfOrder.incrementAndGet();
+                            }
+                            if (bitmap.getWidth() != info.width || bitmap.getHeight() != info.height) {
+                                wrongFrames.incrementAndGet();
+                            }
+                            bitmapPool.release(bitmap);
+                        }
+
+                        @Override
+                        public void onError(Exception e) {
+                            errors.incrementAndGet();
+                        }
+                    });
+            probe = new SyntheticProbe(new ProcessedImageListener(converter));
+            probe.setFrameRate(FRAME_RATE);
+            probe.setBurstLength(4);
+            probe.setJitterNanos(TimeUnit.MILLISECONDS.toNanos(20));
+        }
+
+        void run(long seconds) throws InterruptedException {
+            probe.start();
+            long rendered = 0;
+            for (long second = 0; second < seconds; ++second) {
+                Thread.sleep(1000);
+                final long now = converter.getRenderedCount();
+                assertTrue("no frame rendered during second " + second, now > rendered);
+                rendered = now;
+            }
+            probe.stop();
+            executor.shutdown();
+            assertTrue("conversions did not finish", executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        void check() {
+            assertEquals(probe.getSentCount(), converter.getSubmittedCount());
+            assertEquals(converter.getSubmittedCount(), converter.getRenderedCount() + converter.getDroppedCount());
+            assertEquals(0, outOfOrder.get());
+            assertEquals(0, errors.get());
+            assertTrue(bitmapPool.getBytesHeld() <= MAX_POOLED_BYTES);
+        }
+    }
+
+    // Forward the processed images only, like the app without raw or spectral data.
+    private static final class ProcessedImageListener implements Solum.Listener {
+        private final ImageConverter converter;
+
+        ProcessedImageListener(ImageConverter converter) {
+            this.converter = converter;
+        }
+
+        @Override
+        public void error(String msg) {
+        }
+
+        @Override
+        public void connectionResult(Connection result, int port, String status) {
+        }
+
+        @Override
+        public void certInfo(int daysValid) {
+        }
+
+        @Override
+        public void imaging(ImagingState state, boolean imaging) {
+        }
+
+        @Override
+        public void newProcessedImage(ByteBuffer buffer, ProcessedImageInfo info, PosInfo[] pos) {
+            converter.convertImage(buffer, info);
+        }
+
+        @Override
+        public void newRawImageFn(ByteBuffer buffer, RawImageInfo info, PosInfo[] pos) {
+        }
+
+        @Override
+        public void newSpectralImageFn(ByteBuffer buffer, SpectralImageInfo info) {
+        }
+
+        @Override
+        public void poweringDown(PowerDown reason, int seconds) {
+        }
+
+        @Override
+        public void buttonPressed(Button button, int count) {
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package me.clarius.sdk.solum.example;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pool of mutable bitmaps, keyed by width, height and config.
+ * <p>
+ * Avoids allocating a new bitmap for every frame: converters acquire a bitmap from the pool and the display
+ * releases it once a newer frame has replaced it on screen.
+ * A bitmap that is never released (for example a frame dropped by LiveData) is simply garbage collected.
+ * <p>
+ * The pool holds at most maxBytes, bitmaps of sizes not used anymore are evicted first.
+ */
+
+public class BitmapPool {
+    private final long maxBytes;
+    private final List<Bucket> buckets = new ArrayList<>();
+    private long bytesHeld = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    public BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Get a bitmap from the pool, or allocate a new one if none is available.
+     * The content of the returned bitmap is undefined.
+     */
+    public Bitmap acquire(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = poll(width, height, config);
+        if (bitmap == null) {
+            bitmap = Bitmap.createBitmap(width, height, config);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Get a bitmap from the pool, or null if none is available.
+     */
+    public synchronized Bitmap poll(int width, int height, Bitmap.Config config) {
+        Bucket bucket = find(width, height, config);
+        Bitmap bitmap = bucket != null ? bucket.bitmaps.pollLast() : null;
+        if (bitmap == null) {
+            ++misses;
+            return null;
+        }
+        ++hits;
+        bytesHeld -= bitmap.getAllocationByteCount();
+        return bitmap;
+    }
+
+    /**
+     * Return a bitmap to the pool, the caller must not use it afterwards.
+     */
+    public synchronized void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) {
+            return;
+        }
+        final int size = bitmap.getAllocationByteCount();
+        Bucket bucket = find(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+        if (bytesHeld + size > maxBytes) {
+            trim(maxBytes - size, bucket);
+        }
+        if (bytesHeld + size > maxBytes) {
+            return;
+        }
+        if (bucket == null) {
+            bucket = new Bucket(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+            buckets.add(bucket);
+        }
+        bucket.bitmaps.addLast(bitmap);
+        bytesHeld += size;
+    }
+
+    /**
+     * Drop all pooled bitmaps.
+     */
+    public synchronized void clear() {
+        trim(0, null);
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getBytesHeld() {
+        return bytesHeld;
+    }
+
+    // Evict bitmaps until the pool holds at most targetBytes, starting with buckets other than keep.
+    private void trim(long targetBytes, Bucket keep) {
+        for (int i = buckets.size() - 1; i >= 0 && bytesHeld > targetBytes; --i) {
+            Bucket bucket = buckets.get(i);
+            if (bucket == keep) {
+                continue;
+            }
+            while (bytesHeld > targetBytes && !bucket.bitmaps.isEmpty()) {
+                bytesHeld -= bucket.bitmaps.pollFirst().getAllocationByteCount();
+            }
+            if (bucket.bitmaps.isEmpty()) {
+                buckets.remove(i);
+            }
+        }
+        if (keep != null) {
+            while (bytesHeld > targetBytes && !keep.bitmaps.isEmpty()) {
+                bytesHeld -= keep.bitmaps.pollFirst().getAllocationByteCount();
+            }
+        }
+    }
+
+    private Bucket find(int width, int height, Bitmap.Config config) {
+        for (int i = 0; i < buckets.size(); ++i) {
+            Bucket bucket = buckets.get(i);
+            if (bucket.width == width && bucket.height == height && bucket.config == config) {
+                return bucket;
+            }
+        }
+        return null;
+    }
+
+    private static final class Bucket {
+        final int width;
+        final int height;
+        final Bitmap.Config config;
+        final ArrayDeque<Bitmap> bitmaps = new ArrayDeque<>();
+
+        Bucket(int width, int height, Bitmap.Config config) {
+            this.width = width;
+            this.height = height;
+            this.config = config;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package me.clarius.sdk.solum.example;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Run the startup steps as soon as their dependencies are done, each step being traced.
+ * <p>
+ * Independent steps run concurrently: blocking steps on the executor, asynchronous steps (Solum calls, Wi-Fi join)
+ * are started and complete the future they are given from their callback. A failed step fails the steps depending
+ * on it, with the failure logged by the caller of the returned future.
+ */
+
+public class Bootstrap {
+    private final Executor executor;
+    private final StartupTrace trace;
+
+    public Bootstrap(Executor executor, StartupTrace trace) {
+        this.executor = executor;
+        this.trace = trace;
+    }
+
+    /**
+     * Run a blocking step on the executor once the given steps are done.
+     */
+    public <T> CompletableFuture<T> run(String name, Supplier<T> step, CompletableFuture<?>... after) {
+        return CompletableFuture.allOf(after).thenApplyAsync(done -> {
+            final StartupTrace.Span span = trace.begin(name);
+            try {
+                return step.get();
+            } finally {
+                span.end();
+            }
+        }, executor);
+    }
+
+    /**
+     * Start an asynchronous step once the given steps are done, the step completes the future it receives.
+     */
+    public <T> CompletableFuture<T> start(String name, Consumer<CompletableFuture<T>> step, CompletableFuture<?>... after) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        CompletableFuture.allOf(after).whenComplete((done, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+                return;
+            }
+            final StartupTrace.Span span = trace.begin(name);
+            result.whenComplete((value, stepError) -> span.end());
+            try {
+                step.accept(result);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+}
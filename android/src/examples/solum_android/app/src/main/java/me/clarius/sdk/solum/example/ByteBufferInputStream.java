@@ -0,0 +1,80 @@
+package me.clarius.sdk.solum.example;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Input stream reading from a byte buffer, between its position and limit.
+ * <p>
+ * Allows decoders expecting a stream to read straight from direct memory without an intermediate byte array.
+ * Reading advances the buffer position.
+ * The stream can be reset to another buffer to be reused across frames.
+ */
+
+public class ByteBufferInputStream extends InputStream {
+    private ByteBuffer buffer;
+    private int mark;
+
+    public ByteBufferInputStream() {
+    }
+
+    public ByteBufferInputStream(ByteBuffer buffer) {
+        reset(buffer);
+    }
+
+    /**
+     * Read from a new buffer, starting at its current position.
+     */
+    public void reset(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.mark = buffer != null ? buffer.position() : 0;
+    }
+
+    @Override
+    public int read() {
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        return buffer.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        final int count = Math.min(length, buffer.remaining());
+        if (count <= 0) {
+            return -1;
+        }
+        buffer.get(bytes, offset, count);
+        return count;
+    }
+
+    @Override
+    public long skip(long n) {
+        final int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+        buffer.position(buffer.position() + count);
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        mark = buffer.position();
+    }
+
+    @Override
+    public synchronized void reset() {
+        buffer.position(mark);
+    }
+}
@@ -0,0 +1,193 @@
+package me.clarius.sdk.solum.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Probe models and applications known for each firmware version, kept on disk.
+ * <p>
+ * The catalog only changes with the firmware, so the lists from the last run can be shown at startup while the
+ * probe is asked again. Until the firmware version is known, the catalog of the firmware used last is current.
+ * Each firmware version has its own file, written to a temporary file then renamed so it is never left truncated.
+ * A file that cannot be read is deleted and treated as missing, the catalog is then rebuilt from the probe answers.
+ * Not thread-safe, use from a single thread.
+ */
+
+public class CatalogCache {
+    private static final int MAGIC = 0x434c4341;
+    private static final int VERSION = 1;
+    private static final String LAST_FILE = "last";
+
+    private final File directory;
+    private String firmwareVersion;
+    private List<String> probes;
+    private final Map<String, List<String>> applications = new HashMap<>();
+
+    /**
+     * Open the catalog of the firmware used last, if any.
+     */
+    public CatalogCache(File directory) throws IOException {
+        this.directory = directory;
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create " + directory);
+        final File last = new File(directory, LAST_FILE);
+        if (!last.exists()) {
+            // first run
+            return;
+        }
+        final String version;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(last))) {
+            version = in.readUTF();
+        } catch (IOException e) {
+            last.delete();
+            return;
+        }
+        load(version);
+    }
+
+    public String getFirmwareVersion() {
+        return firmwareVersion;
+    }
+
+    /**
+     * Switch to the catalog of a firmware version, loading it from disk if known.
+     *
+     * @return true if the firmware changed, the lists may then differ.
+     */
+    public boolean setFirmwareVersion(String version) throws IOException {
+        if (version.equals(firmwareVersion)) {
+            return false;
+        }
+        load(version);
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(new File(directory, LAST_FILE)))) {
+            out.writeUTF(version);
+        }
+        return true;
+    }
+
+    /**
+     * Known probe models, or null if never received.
+     */
+    public List<String> getProbes() {
+        return probes;
+    }
+
+    /**
+     * Known applications of a probe model, or null if never received.
+     */
+    public List<String> getApplications(String probe) {
+        return applications.get(probe);
+    }
+
+    /**
+     * @return true if the list changed, it is then saved.
+     */
+    public boolean putProbes(List<String> list) throws IOException {
+        if (list.equals(probes)) {
+            return false;
+        }
+        probes = Collections.unmodifiableList(new ArrayList<>(list));
+        save();
+        return true;
+    }
+
+    /**
+     * @return true if the list changed, it is then saved.
+     */
+    public boolean putApplications(String probe, List<String> list) throws IOException {
+        if (list.equals(applications.get(probe))) {
+            return false;
+        }
+        applications.put(probe, Collections.unmodifiableList(new ArrayList<>(list)));
+        save();
+        return true;
+    }
+
+    private void load(String version) {
+        firmwareVersion = version;
+        probes = null;
+        applications.clear();
+        final File file = fileOf(version);
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                // unknown format, rebuilt from the probe answers
+                return;
+            }
+            probes = readList(in);
+            final int count = in.readInt();
+            for (int i = 0; i < count; ++i) {
+                final String probe = in.readUTF();
+                applications.put(probe, readList(in));
+            }
+        } catch (IOException e) {
+            probes = null;
+            applications.clear();
+            file.delete();
+        }
+    }
+
+    private void save() throws IOException {
+        if (firmwareVersion == null) {
+            // nothing to key the catalog with yet
+            return;
+        }
+        final File file = fileOf(firmwareVersion);
+        final File partial = new File(file.getPath() + ".part");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(partial)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeList(out, probes);
+            out.writeInt(applications.size());
+            for (Map.Entry<String, List<String>> entry : applications.entrySet()) {
+                out.writeUTF(entry.getKey());
+                writeList(out, entry.getValue());
+            }
+        }
+        if (!partial.renameTo(file)) {
+            partial.delete();
+            throw new IOException("Cannot write " + file);
+        }
+    }
+
+    private File fileOf(String version) {
+        return new File(directory, "catalog-" + version.replaceAll("[^A-Za-z0-9._-]", "_") + ".bin");
+    }
+
+    private static List<String> readList(DataInputStream in) throws IOException {
+        final int count = in.readInt();
+        if (count < 0) {
+            return null;
+        }
+        final List<String> list = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            list.add(in.readUTF());
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    // null lists are written with a negative size
+    private static void writeList(DataOutputStream out, List<String> list) throws IOException {
+        if (list == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(list.size());
+        for (String item : list) {
+            out.writeUTF(item);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package me.clarius.sdk.solum.example;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import java.nio.ByteBuffer;
+
+import me.clarius.sdk.ImageFormat;
+import me.clarius.sdk.ProcessedImageInfo;
+
+/**
+ * Keep the most recent processed frames in memory to review them once frozen.
+ * <p>
+ * Frames are stored as received: compressed frames stay compressed, uncompressed frames are stored as raw pixels.
+ * Their data is appended to a single direct buffer used circularly, so the history never grows the Java heap and
+ * never exceeds the byte budget; the oldest frames are evicted when the byte, duration or frame count budget is
+ * reached. The image info is kept alongside each frame.
+ * <p>
+ * The storage is allocated on the first append, so no memory is reserved until frames are actually received.
+ * <p>
+ * Frames are addressed by index, 0 being the oldest, and only decoded when requested. A decoded frame is first
+ * copied out under the lock, then decoded without holding it, so decoding never blocks the appending thread.
+ */
+
+public class CineBuffer {
+    private static final int DECODE_TEMP_STORAGE = 16 * 1024;
+    private final int maxBytes;
+    private final long maxDurationNanos;
+    private final BitmapPool bitmapPool;
+    private final BitmapFactory.Options options = new BitmapFactory.Options();
+    private final ByteBufferInputStream stream = new ByteBufferInputStream();
+    // serializes the decoding, which uses the options, stream and scratch buffer without holding the frame lock
+    private final Object decodeLock = new Object();
+    // frame ring, first is the index of the oldest frame
+    private final int[] offsets;
+    private final int[] lengths;
+    private final long[] timestamps;
+    private final ProcessedImageInfo[] infos;
+    private int first = 0;
+    private int count = 0;
+    // where the next frame is written in the data buffer
+    private int writeOffset = 0;
+    private long droppedCount = 0;
+    // frame storage, allocated on the first append
+    private ByteBuffer data;
+    // copy of the frame being decoded
+    private ByteBuffer scratch;
+
+    /**
+     * @param maxBytes         size of the frame storage, allocated on the first append.
+     * @param maxDurationNanos maximum time between the oldest and newest frames.
+     * @param maxFrames        maximum number of frames.
+     * @param bitmapPool       pool providing the decoded bitmaps.
+     */
+    public CineBuffer(int maxBytes, long maxDurationNanos, int maxFrames, BitmapPool bitmapPool) {
+        if (maxBytes <= 0 || maxDurationNanos <= 0 || maxFrames <= 0)
+            throw new IllegalArgumentException("invalid cine budget");
+        this.maxBytes = maxBytes;
+        this.maxDurationNanos = maxDurationNanos;
+        this.bitmapPool = bitmapPool;
+        this.offsets = new int[maxFrames];
+        this.lengths = new int[maxFrames];
+        this.timestamps = new long[maxFrames];
+        this.infos = new ProcessedImageInfo[maxFrames];
+        options.inMutable = true;
+        options.inTempStorage = new byte[DECODE_TEMP_STORAGE];
+    }
+
+    /**
+     * Copy a frame, the buffer position is left unchanged.
+     *
+     * @return false if the frame is larger than the whole storage.
+     */
+    public synchronized boolean append(ByteBuffer buffer, ProcessedImageInfo info) {
+        final int size = info.imageSize;
+        if (size > maxBytes || size > buffer.remaining()) {
+            ++droppedCount;
+            return false;
+        }
+        if (data == null) {
+            data = ByteBuffer.allocateDirect(maxBytes);
+        }
+        int offset = writeOffset;
+        if (offset + size > data.capacity()) {
+            // wrap around: the frames stored after the write offset are the oldest ones
+            while (count > 0 && offsets[first] >= offset) {
+                evictOldest();
+            }
+            offset = 0;
+        }
+        while (count > 0 && offsets[first] < offset + size && offsets[first] + lengths[first] > offset) {
+            evictOldest();
+        }
+        while (count > 0 && (count == offsets.length || info.tm - timestamps[first] > maxDurationNanos)) {
+            evictOldest();
+        }
+        final ByteBuffer source = buffer.duplicate();
+        source.limit(source.position() + size);
+        final ByteBuffer dest = data.duplicate();
+        dest.position(offset);
+        dest.put(source);
+
+        final int slot = (first + count) % offsets.length;
+        offsets[slot] = offset;
+        lengths[slot] = size;
+        timestamps[slot] = info.tm;
+        infos[slot] = info;
+        ++count;
+        writeOffset = offset + size;
+        return true;
+    }
+
+    /**
+     * Number of frames available.
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    public synchronized void clear() {
+        while (count > 0) {
+            evictOldest();
+        }
+        first = 0;
+        writeOffset = 0;
+    }
+
+    /**
+     * Number of frames not stored because they did not fit in the storage.
+     */
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Decode a frame, the bitmap comes from the pool and should be released once not needed anymore.
+     *
+     * @return null if there is no frame at this index anymore.
+     */
+    public Frame decode(int index) {
+        synchronized (decodeLock) {
+            final ProcessedImageInfo info;
+            synchronized (this) {
+                if (index < 0 || index >= count) {
+                    return null;
+                }
+                final int slot = slot(index);
+                info = infos[slot];
+                final ByteBuffer frame = data.duplicate();
+                frame.position(offsets[slot]);
+                frame.limit(offsets[slot] + lengths[slot]);
+                if (scratch == null || scratch.capacity() < lengths[slot]) {
+                    scratch = ByteBuffer.allocateDirect(lengths[slot]);
+                }
+                scratch.clear();
+                scratch.put(frame);
+                scratch.flip();
+            }
+            return new Frame(doDecode(scratch, info), info);
+        }
+    }
+
+    private Bitmap doDecode(ByteBuffer frame, ProcessedImageInfo info) {
+        if (info.format == ImageFormat.Uncompressed) {
+            Bitmap bitmap = bitmapPool.acquire(info.width, info.height, Bitmap.Config.ARGB_8888);
+            bitmap.copyPixelsFromBuffer(frame);
+            return bitmap;
+        }
+        Bitmap reusable = bitmapPool.poll(info.width, info.height, Bitmap.Config.ARGB_8888);
+        options.inBitmap = reusable;
+        stream.reset(frame);
+        try {
+            return BitmapFactory.decodeStream(stream, null, options);
+        } catch (IllegalArgumentException e) {
+            // the encoded image does not fit in the pooled bitmap
+            options.inBitmap = null;
+            bitmapPool.release(reusable);
+            stream.reset();
+            return BitmapFactory.decodeStream(stream, null, options);
+        } finally {
+            options.inBitmap = null;
+            stream.reset(null);
+        }
+    }
+
+    private int slot(int index) {
+        if (index < 0 || index >= count)
+            throw new IndexOutOfBoundsException("frame " + index + " out of " + count);
+        return (first + index) % offsets.length;
+    }
+
+    private void evictOldest() {
+        infos[first] = null;
+        first = (first + 1) % offsets.length;
+        --count;
+    }
+
+    /**
+     * A decoded frame and the info it was received with.
+     */
+    public static final class Frame {
+        public final Bitmap bitmap;
+        public final ProcessedImageInfo info;
+
+        Frame(Bitmap bitmap, ProcessedImageInfo info) {
+            this.bitmap = bitmap;
+            this.info = info;
+        }
+    }
+}
@@ -10,7 +10,7 @@ import java.util.Optional;
  * <p>
  * The constants are defined in file local.properties and added in the generated class BuildConfig by plugin secrets-gradle-plugin.
  * If a constant is missing from the file, it will not be added in class BuildConfig causing a compilation error if trying to access it.
- * This helper class uses reflection to read the fields only if they exist.
+ * This helper class uses reflection to read the fields only if they exist, once on first access.
  * This is useful during development to import network values instead of typing them in the GUI.
  * <p>
  * Known properties:
@@ -23,15 +23,23 @@ public class ClariusConfig {
     private static final String TAG = "ClariusConfig";
 
     public static Optional<String> maybeCert() {
-        return Optional.ofNullable((String) getFieldValue(BuildConfig.class, "clariusScannerCert"));
+        return Values.CERT;
     }
 
     public static Optional<String> maybeSSID() {
-        return Optional.ofNullable((String) getFieldValue(BuildConfig.class, "clariusScannerSSID"));
+        return Values.SSID;
     }
 
     public static Optional<String> maybePassphrase() {
-        return Optional.ofNullable((String) getFieldValue(BuildConfig.class, "clariusScannerPassphrase"));
+        return Values.PASSPHRASE;
+    }
+
+    /**
+     * Resolve the values ahead of their first use, for instance on a background thread during startup.
+     */
+    public static void load() {
+        // the first access initializes all the values
+        maybeCert();
     }
 
     private static Object getFieldValue(Class<?> fromClass, String name) {
@@ -43,4 +51,11 @@ public class ClariusConfig {
         }
         return null;
     }
+
+    // Initialized by the class loader on first access, thread-safe without locking afterwards.
+    private static final class Values {
+        static final Optional<String> CERT = Optional.ofNullable((String) getFieldValue(BuildConfig.class, "clariusScannerCert"));
+        static final Optional<String> SSID = Optional.ofNullable((String) getFieldValue(BuildConfig.class, "clariusScannerSSID"));
+        static final Optional<String> PASSPHRASE = Optional.ofNullable((String) getFieldValue(BuildConfig.class, "clariusScannerPassphrase"));
+    }
 }
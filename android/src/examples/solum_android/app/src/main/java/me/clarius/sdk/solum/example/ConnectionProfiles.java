@@ -0,0 +1,93 @@
+package me.clarius.sdk.solum.example;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.Optional;
+
+/**
+ * Remember how each probe was last reached, so the next connection does not need any typing.
+ * <p>
+ * Profiles are keyed by the probe Wi-Fi SSID, which contains the probe serial number. The BSSID lets Android
+ * rejoin the network without asking the user again, together with the passphrase, which is stored in the app
+ * private preferences and excluded from backups: it only protects the probe Wi-Fi, and without it the network
+ * cannot be rejoined without typing.
+ * The network handle is only valid until the network is lost, it is kept for information.
+ */
+
+public class ConnectionProfiles {
+    private static final String PREFERENCES = "connection_profiles";
+    private static final String LAST = "last";
+
+    private final SharedPreferences preferences;
+
+    public ConnectionProfiles(Context context) {
+        preferences = context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+    }
+
+    public Optional<Profile> get(String ssid) {
+        if (!preferences.contains(ssid + ".ip")) {
+            return Optional.empty();
+        }
+        final long handle = preferences.getLong(ssid + ".network", 0);
+        return Optional.of(new Profile(ssid,
+                preferences.getString(ssid + ".bssid", null),
+                preferences.getString(ssid + ".ip", null),
+                preferences.getInt(ssid + ".port", 0),
+                handle != 0 ? Optional.of(handle) : Optional.empty(),
+                preferences.getString(ssid + ".passphrase", null)));
+    }
+
+    /**
+     * Profile of the probe connected last.
+     */
+    public Optional<Profile> getLast() {
+        final String ssid = preferences.getString(LAST, null);
+        return ssid != null ? get(ssid) : Optional.empty();
+    }
+
+    public void put(Profile profile) {
+        final SharedPreferences.Editor editor = preferences.edit()
+                .putString(LAST, profile.ssid)
+                .putString(profile.ssid + ".ip", profile.ipAddress)
+                .putInt(profile.ssid + ".port", profile.port)
+                .putLong(profile.ssid + ".network", profile.networkHandle.orElse(0L));
+        if (profile.bssid != null) {
+            editor.putString(profile.ssid + ".bssid", profile.bssid);
+        } else {
+            editor.remove(profile.ssid + ".bssid");
+        }
+        if (profile.passphrase != null) {
+            editor.putString(profile.ssid + ".passphrase", profile.passphrase);
+        }
+        editor.apply();
+    }
+
+    /**
+     * Save the passphrase of a network once joined, kept until replaced.
+     */
+    public void putPassphrase(String ssid, String passphrase) {
+        preferences.edit().putString(ssid + ".passphrase", passphrase).apply();
+    }
+
+    public static final class Profile {
+        public final String ssid;
+        /** Null if unknown. */
+        public final String bssid;
+        public final String ipAddress;
+        public final int port;
+        public final Optional<Long> networkHandle;
+        /** Null if unknown, the stored passphrase is kept when saving a profile without one. */
+        public final String passphrase;
+
+        public Profile(String ssid, String bssid, String ipAddress, int port, Optional<Long> networkHandle,
+                       String passphrase) {
+            this.ssid = ssid;
+            this.bssid = bssid;
+            this.ipAddress = ipAddress;
+            this.port = port;
+            this.networkHandle = networkHandle;
+            this.passphrase = passphrase;
+        }
+    }
+}
@@ -1,26 +1,43 @@
 package me.clarius.sdk.solum.example;
 
+import android.Manifest;
 import android.content.Context;
+import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
 import android.view.LayoutInflater;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.SeekBar;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.navigation.fragment.NavHostFragment;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import me.clarius.sdk.Button;
 import me.clarius.sdk.Connection;
@@ -35,13 +52,36 @@ import me.clarius.sdk.ProcessedImageInfo;
 import me.clarius.sdk.RawImageInfo;
 import me.clarius.sdk.Solum;
 import me.clarius.sdk.SpectralImageInfo;
+import me.clarius.sdk.Tgc;
 import me.clarius.sdk.solum.example.databinding.FragmentFirstBinding;
 
 public class FirstFragment extends Fragment {
 
     private static final String TAG = "Solum";
-    private final ExecutorService executorService = Executors.newFixedThreadPool(1);
+    private static final int DECODE_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final double SPECTRAL_SWEEP_SECONDS = 4;
+    private static final double SPECTRAL_HISTORY_SECONDS = 60;
+    private static final int IMU_CAPACITY = 4096;
+    private static final long VOLUME_VOXEL_BUDGET = 192 * 192 * 192;
+    private static final double VOLUME_EXTENT_MICRONS = 150_000;
+    private static final long RECORDING_SEGMENT_SIZE = 256L * 1024 * 1024;
+    private static final int RECORDING_BACKLOG_FRAMES = 60;
+    private static final int ROI_POINTS = 6;
+    private static final long COMMAND_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private final ExecutorService executorService = Executors.newFixedThreadPool(DECODE_THREADS);
+    // startup steps and file I/O, kept off the decoding threads
+    private final ExecutorService ioExecutorService = Executors.newCachedThreadPool();
+    private final ExecutorService rawExecutorService = Executors.newSingleThreadExecutor();
+    private final ExecutorService volumeExecutorService = Executors.newSingleThreadExecutor();
+    private final ScheduledExecutorService commandExecutorService = Executors.newSingleThreadScheduledExecutor();
+    private final ParallelStripes stripes = new ParallelStripes(DECODE_THREADS);
     private final WifiAutoJoin wifiAutoJoin = new WifiAutoJoin();
+    private final ActivityResultLauncher<String[]> locationPermission = registerForActivityResult(
+            new ActivityResultContracts.RequestMultiplePermissions(), granted -> {
+                if (!Boolean.TRUE.equals(granted.get(Manifest.permission.ACCESS_FINE_LOCATION))) {
+                    showMessage("Without location permission, enter the MAC address to rejoin without approval");
+                }
+            });
     private FragmentFirstBinding binding;
     private Solum solum;
     private boolean isRunning = false;
@@ -49,6 +89,26 @@ public class FirstFragment extends Fragment {
     private SolumViewModel viewModel;
     private WorkflowViewModel workflowViewModel;
     private ImageConverter imageConverter;
+    private SurfaceRenderer surfaceRenderer;
+    private RawImageConverter rawImageConverter;
+    private final SpectralWaterfall spectralWaterfall = new SpectralWaterfall(SPECTRAL_SWEEP_SECONDS, SPECTRAL_HISTORY_SECONDS);
+    private final SpectralRenderer spectralRenderer = new SpectralRenderer(spectralWaterfall);
+    private final ImuStream imuStream = new ImuStream(IMU_CAPACITY);
+    private volatile long lastImageTimestamp;
+    private VolumeSweep volumeSweep;
+    private volatile FrameRecorder frameRecorder;
+    private RawDataDownload rawDataDownload;
+    private LatencyOverlay latencyOverlay;
+    private SyntheticProbe syntheticProbe;
+    private ParamCommandQueue commandQueue;
+    private ProbeStateService probeStateService;
+    private ConnectionProfiles connectionProfiles;
+    private ProbeReconnector probeReconnector;
+    private StreamController streamController;
+    private OutputSizeNegotiator outputSizeNegotiator;
+    private OutputSizeNegotiator rawOutputSizeNegotiator;
+    // completed with the result of Solum.initialize()
+    private CompletableFuture<Boolean> sdkInitialized;
     private final Solum.Listener solumListener = new Solum.Listener() {
         @Override
         public void error(String msg) {
@@ -58,7 +118,10 @@ public class FirstFragment extends Fragment {
         @Override
         public void connectionResult(Connection result, int port, String status) {
             Log.d(TAG, "Connection result: " + result + ", port: " + port + ", status: " + status);
+            probeReconnector.onConnectionResult(result);
             if (result == Connection.ProbeConnected) {
+                viewModel.getStartupTrace().mark("probe connected");
+                probeStateService.clear();
                 showMessage("Connected");
             } else if (result == Connection.SwUpdateRequired) {
                 showMessage("Firmware update needed");
@@ -76,19 +139,44 @@ public class FirstFragment extends Fragment {
         public void imaging(ImagingState state, boolean imaging) {
             showMessage("Imaging state: " + state + " imaging? " + imaging);
             isRunning = imaging;
+            spectralWaterfall.setFrozen(!imaging);
+            new Handler(Looper.getMainLooper()).post(() -> showCineControls(!imaging));
+            probeStateService.onImagingChanged();
+            streamController.onImaging(state, imaging);
+            if (imaging) {
+                viewModel.getStartupTrace().mark("imaging started");
+            }
+            if (state == ImagingState.ImagingReady) {
+                // also warms up the state cache
+                probeStateService.snapshot().thenAccept(probeState ->
+                        probeState.probeInfo.ifPresent(rawImageConverter::setProbeInfo));
+            }
         }
 
         @Override
         public void newProcessedImage(ByteBuffer buffer, ProcessedImageInfo info, PosInfo[] pos) {
+            viewModel.getLatencyTracker().onReceived(info.tm);
+            streamController.onFrame();
+            imuStream.push(pos);
+            lastImageTimestamp = info.tm;
+            viewModel.getCineBuffer().append(buffer, info);
+            FrameRecorder recorder = frameRecorder;
+            if (recorder != null) {
+                recorder.record(new FrameRecorder.Header(info.tm, RecordingFormats.toCode(info.format), info.width, info.height,
+                        info.bitsPerPixel, info.micronsPerPixel, info.originX, info.originY, info.imageSize), buffer);
+            }
             imageConverter.convertImage(buffer, info);
         }
 
         @Override
         public void newRawImageFn(ByteBuffer buffer, RawImageInfo info, PosInfo[] pos) {
+            rawImageConverter.convertImage(buffer, info);
         }
 
         @Override
         public void newSpectralImageFn(ByteBuffer buffer, SpectralImageInfo info) {
+            spectralWaterfall.append(buffer, info.lines, info.samples, info.bitsPerSample, info.period, info.pw,
+                    info.pw ? info.velocityPerSample : info.micronsPerSample);
         }
 
         @Override
@@ -111,8 +199,8 @@ public class FirstFragment extends Fragment {
         return binding.getRoot();
     }
 
-    private String getCertDir() {
-        return requireContext().getDir("cert", Context.MODE_PRIVATE).toString();
+    private static String getCertDir(Context context) {
+        return context.getDir("cert", Context.MODE_PRIVATE).toString();
     }
 
     private String getCertificate() {
@@ -120,32 +208,237 @@ public class FirstFragment extends Fragment {
         return ClariusConfig.maybeCert().orElse("research");
     }
 
+    /**
+     * Start the independent startup steps concurrently: configuration, certificate directory, Solum initialization
+     * and catalog loading; the Wi-Fi join of the last probe starts with them, see restoreLastProfile().
+     */
+    private void startServices() {
+        final Context context = requireContext().getApplicationContext();
+        final StartupTrace trace = viewModel.getStartupTrace();
+        trace.mark("view created");
+        final Bootstrap bootstrap = new Bootstrap(ioExecutorService, trace);
+        final CompletableFuture<String> certDir = bootstrap.run("cert dir", () -> getCertDir(context));
+        final CompletableFuture<String> certificate = bootstrap.run("config", () -> {
+            ClariusConfig.load();
+            return getCertificate();
+        });
+        final CompletableFuture<Boolean> initialized = bootstrap.start("sdk init",
+                done -> solum.initialize(certDir.join(), done::complete), certDir);
+        sdkInitialized = initialized;
+        final CompletableFuture<Boolean> certified = bootstrap.run("certificate", () -> {
+            Log.d(TAG, "Initialization result: " + initialized.join());
+            if (initialized.join()) {
+                solum.setCertificate(certificate.join());
+            }
+            return initialized.join();
+        }, initialized, certificate);
+        certified.thenAccept(probeReconnector::onInitialized);
+        final CompletableFuture<Optional<String>> firmware = bootstrap.start("firmware version", done -> {
+            if (initialized.join()) {
+                solum.getFirmwareVersion(Platform.HD, done::complete);
+            } else {
+                done.complete(Optional.empty());
+            }
+        }, initialized);
+        final CompletableFuture<Void> catalog = bootstrap.start("catalog",
+                done -> workflowViewModel.loadCatalog(new File(context.getCacheDir(), "catalog"), () -> done.complete(null)));
+        firmware.thenAcceptBoth(catalog, (maybeVersion, loaded) -> {
+            if (!initialized.join()) {
+                return;
+            }
+            showMessage("Retrieved FW version: " + maybeVersion.orElse("???"));
+            // the catalog depends on the firmware, revalidate it once its version is known
+            maybeVersion.ifPresent(workflowViewModel::setFirmwareVersion);
+            workflowViewModel.refreshProbes(solum);
+        }).exceptionally(e -> {
+            showError("Startup failed: " + e);
+            return null;
+        });
+    }
+
     public void onViewCreated(@NonNull View view, Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
 
         viewModel = new ViewModelProvider(this).get(SolumViewModel.class);
-        viewModel.getProcessedImage().observe(getViewLifecycleOwner(), binding.imageView::setImageBitmap);
+        viewModel.getProcessedImage().observe(getViewLifecycleOwner(), bitmap -> {
+            binding.imageView.setImageBitmap(bitmap);
+            viewModel.onImageDisplayed(bitmap);
+        });
+        viewModel.getRawImage().observe(getViewLifecycleOwner(), bitmap -> {
+            binding.rawImageView.setImageBitmap(bitmap);
+            viewModel.onRawImageDisplayed(bitmap);
+        });
 
         solum = new Solum(requireContext(), solumListener);
-        solum.initialize(getCertDir(), new Solum.InitializationResult() {
+        connectionProfiles = new ConnectionProfiles(requireContext());
+        probeReconnector = new ProbeReconnector(solum, connectionProfiles);
+        workflowViewModel = new ViewModelProvider(requireActivity()).get(WorkflowViewModel.class);
+        commandQueue = new ParamCommandQueue(solum, commandExecutorService, COMMAND_INTERVAL_NANOS,
+                new CommandListener());
+        probeStateService = new ProbeStateService(solum, ROI_POINTS, commandExecutorService);
+        streamController = new StreamController(solum, commandQueue, commandExecutorService,
+                () -> imageConverter.getDroppedCount(), (from, to, reason) -> {
+                    Log.i(TAG, "Stream " + from + " -> " + to + ": " + reason);
+                    if (from != to) {
+                        showMessage("Stream quality: " + to);
+                    }
+                });
+
+        volumeSweep = new VolumeSweep(volumeExecutorService, imuStream.getRing(),
+                new VolumeReconstructor(stripes, VOLUME_VOXEL_BUDGET, VOLUME_EXTENT_MICRONS));
+        imageConverter = new ImageConverter(executorService, ImageConverter.Mode.PARALLEL, 2 * DECODE_THREADS,
+                viewModel.getBitmapPool(), new ImageCallback(viewModel, volumeSweep));
+        imageConverter.setLatencyTracker(viewModel.getLatencyTracker());
+        latencyOverlay = new LatencyOverlay(viewModel.getLatencyTracker());
+        syntheticProbe = new SyntheticProbe(solumListener);
+        syntheticProbe.setRawFrames(true);
+        syntheticProbe.setSpectralFrames(true);
+
+        spectralRenderer.start(binding.spectralImageView);
+        binding.spectralImageView.setOnTouchListener((v, event) -> {
+            final int samples = spectralWaterfall.getSamples();
+            if (samples > 0 && v.getHeight() > 0) {
+                final int sample = Math.max(0, Math.min(samples - 1, (int) (event.getY() * samples / v.getHeight())));
+                binding.spectralValue.setText(Strings.fromSpectralValue(spectralWaterfall, sample));
+            }
+            if (event.getActionMasked() == MotionEvent.ACTION_UP) {
+                v.performClick();
+            }
+            return true;
+        });
+
+        rawImageConverter = new RawImageConverter(rawExecutorService, stripes, viewModel.getBitmapPool(),
+                new RawImageCallback(viewModel.getRawImage()));
+        rawOutputSizeNegotiator = new OutputSizeNegotiator(rawImageConverter::setOutputSize);
+        rawOutputSizeNegotiator.attach(binding.rawImageView);
+        final RfProcessor rfProcessor = rawImageConverter.getRfProcessor();
+        final int dynamicRange = (int) Math.round(rfProcessor.getDynamicRange());
+        binding.rfDynamicRangeSeekBar.setProgress(dynamicRange);
+        binding.rfDynamicRangeLabel.setText(getString(R.string.rf_dynamic_range, dynamicRange));
+        binding.rfDynamicRangeSeekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
             @Override
-            public void accept(boolean connected) {
-                Log.d(TAG, "Initialization result: " + connected);
-                if (connected) {
-                    solum.setCertificate(getCertificate());
-                    solum.getFirmwareVersion(Platform.HD,
-                            maybeVersion -> showMessage("Retrieved FW version: " + maybeVersion.orElse("???")));
-                    workflowViewModel.refreshProbes(solum);
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                binding.rfDynamicRangeLabel.setText(getString(R.string.rf_dynamic_range, progress));
+                if (fromUser) {
+                    rfProcessor.setDynamicRange(progress);
                 }
             }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {
+            }
+
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+            }
         });
+
+        // the Solum listener uses all the objects above, Solum may call it as soon as it is initialized
+        startServices();
         solum.setProbeSettings(new ProbeSettings());
 
-        workflowViewModel = new ViewModelProvider(requireActivity()).get(WorkflowViewModel.class);
-        workflowViewModel.getSelectedProbe().observe(getViewLifecycleOwner(),
-                currentProbe -> workflowViewModel.refreshApplications(solum, currentProbe));
+        // a probe can be selected from the cached catalog before Solum is ready to list its applications
+        workflowViewModel.getSelectedProbe().observe(getViewLifecycleOwner(), currentProbe -> {
+            workflowViewModel.showCachedApplications(currentProbe);
+            sdkInitialized.thenAccept(initialized -> {
+                final Solum current = solum;
+                if (initialized && current != null) {
+                    workflowViewModel.refreshApplications(current, currentProbe);
+                }
+            });
+        });
+
+        surfaceRenderer = new SurfaceRenderer(viewModel.getBitmapPool());
+        surfaceRenderer.attach(binding.surfaceView);
+        outputSizeNegotiator = new OutputSizeNegotiator((width, height) -> {
+            Log.d(TAG, "Output size: " + width + "x" + height);
+            imageConverter.setTargetSize(width, height);
+            streamController.setBaseOutputSize(width, height);
+            syntheticProbe.setOutputSize(width, height);
+        });
+        outputSizeNegotiator.attach(binding.imageView);
+        outputSizeNegotiator.attach(binding.surfaceView);
+        binding.switchSurfaceRendering.setOnCheckedChangeListener((button, checked) -> setSurfaceRendering(checked));
+        binding.switchSmoothPresentation.setOnCheckedChangeListener((button, checked) -> viewModel.setSmoothPresentation(checked));
+        binding.switchImuStreaming.setOnCheckedChangeListener((button, checked) -> commandQueue.setParam(Param.ImuStreaming, checked ? 1 : 0));
+        binding.switchVolumeSweep.setOnCheckedChangeListener((button, checked) -> volumeSweep.setSweeping(checked));
+        binding.switchRecording.setOnCheckedChangeListener((button, checked) -> setRecording(checked));
+        binding.switchLatencyOverlay.setOnCheckedChangeListener((button, checked) -> setLatencyOverlay(checked));
+        binding.switchSyntheticProbe.setOnCheckedChangeListener((button, checked) -> setSyntheticProbe(checked));
+        binding.buttonExportLatency.setOnClickListener(v -> doExportLatency());
+
+        binding.gainSeekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                if (fromUser) {
+                    commandQueue.setParam(Param.Gain, progress);
+                }
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {
+            }
+
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+            }
+        });
+
+        binding.cineSeekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                if (fromUser) {
+                    viewModel.showCineFrame(progress);
+                }
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {
+            }
+
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+            }
+        });
+
+        binding.spectralSeekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                if (fromUser) {
+                    // newest strip on the right
+                    spectralWaterfall.setScrollBack(seekBar.getMax() - progress);
+                }
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {
+            }
+
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+            }
+        });
+
+        final int presentationDelayMs = (int) TimeUnit.NANOSECONDS.toMillis(viewModel.getPresentationMaxDelayNanos());
+        binding.presentationLatencySeekBar.setProgress(presentationDelayMs);
+        binding.presentationLatencyLabel.setText(getString(R.string.presentation_latency, presentationDelayMs));
+        binding.presentationLatencySeekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
+                binding.presentationLatencyLabel.setText(getString(R.string.presentation_latency, progress));
+                if (fromUser) {
+                    viewModel.setPresentationLatencyBudget(0, TimeUnit.MILLISECONDS.toNanos(progress));
+                }
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {
+            }
 
-        imageConverter = new ImageConverter(executorService, new ImageCallback(viewModel.getProcessedImage()));
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+            }
+        });
 
         binding.buttonBluetooth.setOnClickListener(view1 -> NavHostFragment.findNavController(FirstFragment.this)
                 .navigate(R.id.action_FirstFragment_to_BluetoothFragment));
@@ -160,11 +453,37 @@ public class FirstFragment extends Fragment {
         binding.buttonLoadApplication.setOnClickListener(v -> doLoadApplication());
         binding.buttonToggleRawDataBuffering.setOnClickListener(v -> toggleBuffering());
         binding.buttonGetRawData.setOnClickListener(v -> doRequestRawData());
+        binding.buttonCancelRawData.setOnClickListener(v -> doCancelRawData());
 
         binding.buttonWifiAutoJoin.setOnClickListener(v -> doWifiAutoJoin());
 
         ClariusConfig.maybeSSID().ifPresent(s -> binding.wifiSsid.setText(s));
         ClariusConfig.maybePassphrase().ifPresent(s -> binding.wifiPassphrase.setText(s));
+        restoreLastProfile();
+    }
+
+    /**
+     * Fill the fields with the probe connected last and, if its Wi-Fi can be joined without approval,
+     * join it while Solum initializes and connect as soon as both are ready.
+     */
+    private void restoreLastProfile() {
+        connectionProfiles.getLast().ifPresent(profile -> {
+            binding.wifiSsid.setText(profile.ssid);
+            binding.ipAddress.setText(profile.ipAddress);
+            binding.tcpPort.setText(Integer.toString(profile.port));
+            if (profile.passphrase != null) {
+                binding.wifiPassphrase.setText(profile.passphrase);
+            }
+            if (profile.bssid == null) {
+                return;
+            }
+            binding.macAddress.setText(profile.bssid);
+            if (profile.passphrase != null) {
+                showMessage("Reconnecting to " + profile.ssid);
+                doWifiAutoJoin();
+                probeReconnector.connect(profile.ssid, profile.ipAddress, profile.port, Optional.empty());
+            }
+        });
     }
 
     private void doSwUpdate() {
@@ -177,10 +496,42 @@ public class FirstFragment extends Fragment {
     }
 
     private void doRequestRawData() {
-        final int start = 0;
-        final int end = 0;
-        RawDataCallback callback = new RawDataCallback();
-        solum.requestRawData(start, end, callback::requestResult);
+        if (rawDataDownload != null) {
+            showError("Raw data download already in progress");
+            return;
+        }
+        binding.rawDataSecondsLayout.setError(null);
+        final String seconds = String.valueOf(binding.rawDataSeconds.getText());
+        long start = 0;
+        long end = 0;
+        if (!seconds.isEmpty()) {
+            // the last seconds before the freeze, in the time base of the image timestamps
+            try {
+                end = lastImageTimestamp;
+                start = end - TimeUnit.SECONDS.toNanos(Long.parseLong(seconds));
+            } catch (NumberFormatException e) {
+                binding.rawDataSecondsLayout.setError("Invalid number");
+                return;
+            }
+            if (end == 0) {
+                showError("No image received yet, leave the duration empty to download everything");
+                return;
+            }
+        }
+        File directory = new File(requireContext().getExternalFilesDir(null), "raw");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            showError("Cannot create " + directory);
+            return;
+        }
+        File destination = new File(directory, "raw-" + System.currentTimeMillis() + ".tar");
+        rawDataDownload = new RawDataDownload(solum, destination, new RawDataListener());
+        rawDataDownload.start(start, end);
+    }
+
+    private void doCancelRawData() {
+        if (rawDataDownload != null) {
+            rawDataDownload.cancel();
+        }
     }
 
     private void toggleBuffering() {
@@ -197,15 +548,120 @@ public class FirstFragment extends Fragment {
         solum.run(newState);
     }
 
+    private void setSurfaceRendering(boolean enabled) {
+        binding.surfaceView.setVisibility(enabled ? View.VISIBLE : View.GONE);
+        binding.imageView.setVisibility(enabled ? View.GONE : View.VISIBLE);
+        viewModel.setSurfaceRenderer(enabled ? surfaceRenderer : null);
+    }
+
+    private void setRecording(boolean enabled) {
+        if (enabled) {
+            File directory = new File(requireContext().getExternalFilesDir(null),
+                    "recordings/" + System.currentTimeMillis());
+            try {
+                frameRecorder = new FrameRecorder(directory, RECORDING_SEGMENT_SIZE, RECORDING_BACKLOG_FRAMES);
+                showMessage("Recording to " + directory);
+            } catch (IOException e) {
+                showError("Failed to start recording: " + e);
+            }
+            return;
+        }
+        final FrameRecorder recorder = frameRecorder;
+        frameRecorder = null;
+        if (recorder == null) {
+            return;
+        }
+        // closing waits for the pending frames to be written
+        ioExecutorService.execute(() -> {
+            try {
+                recorder.close();
+                showMessage("Recorded " + recorder.getRecordedCount() + " frames, dropped " + recorder.getDroppedCount());
+            } catch (IOException e) {
+                showError("Failed to record: " + e);
+            }
+        });
+    }
+
+    private void setSyntheticProbe(boolean enabled) {
+        if (enabled) {
+            syntheticProbe.start();
+        } else {
+            syntheticProbe.stop();
+            showMessage("Simulated " + syntheticProbe.getSentCount() + " frames, lost " + syntheticProbe.getLostCount());
+        }
+    }
+
+    private void setLatencyOverlay(boolean enabled) {
+        binding.latencyOverlay.setVisibility(enabled ? View.VISIBLE : View.GONE);
+        if (enabled) {
+            latencyOverlay.start(binding.latencyOverlay);
+        } else {
+            latencyOverlay.stop();
+        }
+    }
+
+    private void doExportLatency() {
+        File file = new File(requireContext().getExternalFilesDir(null), "latency-" + System.currentTimeMillis() + ".csv");
+        LatencyTracker tracker = viewModel.getLatencyTracker();
+        ioExecutorService.execute(() -> {
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+                tracker.writeCsv(writer);
+                showMessage("Latency exported to " + file);
+            } catch (IOException e) {
+                showError("Failed to export latency: " + e);
+            }
+        });
+    }
+
+    private void showCineControls(boolean frozen) {
+        if (binding == null) {
+            return;
+        }
+        int frames = viewModel.getCineBuffer().size();
+        boolean visible = frozen && frames > 0;
+        binding.cineSeekBar.setVisibility(visible ? View.VISIBLE : View.GONE);
+        if (visible) {
+            binding.cineSeekBar.setMax(frames - 1);
+            binding.cineSeekBar.setProgress(frames - 1);
+        }
+        // the spectrum keeps its own history, scrolled independently of the cine frames
+        final int scrollBack = spectralWaterfall.getMaxScrollBack();
+        final boolean spectralVisible = frozen && scrollBack > 0;
+        binding.spectralSeekBar.setVisibility(spectralVisible ? View.VISIBLE : View.GONE);
+        if (spectralVisible) {
+            binding.spectralSeekBar.setMax(scrollBack);
+            binding.spectralSeekBar.setProgress(scrollBack);
+        }
+    }
+
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        viewModel.setSurfaceRenderer(null);
+        outputSizeNegotiator.detach();
+        rawOutputSizeNegotiator.detach();
+        spectralRenderer.stop();
+        latencyOverlay.stop();
+        syntheticProbe.stop();
+        setRecording(false);
         doDisconnect();
         solum.release();
         solum = null;
         binding = null;
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        // pending conversions are useless once the fragment is gone, let file writes complete
+        executorService.shutdownNow();
+        rawExecutorService.shutdownNow();
+        volumeExecutorService.shutdownNow();
+        commandExecutorService.shutdownNow();
+        ioExecutorService.shutdown();
+        stripes.close();
+    }
+
     private void doConnect() {
         if (solum == null) {
             showError("Solum not initialized");
@@ -236,14 +692,16 @@ public class FirstFragment extends Fragment {
             }
         }
 
+        String ssid = String.valueOf(binding.wifiSsid.getText());
         showMessage("Connecting to " + ipAddress + ":" + tcpPort);
-        solum.connect(ipAddress, tcpPort, maybeNetworkID);
+        probeReconnector.connect(ssid.isEmpty() ? null : ssid, ipAddress, tcpPort, maybeNetworkID);
     }
 
     private void doDisconnect() {
         if (solum == null) {
             return;
         }
+        probeReconnector.disconnect();
         solum.disconnect();
     }
 
@@ -259,6 +717,8 @@ public class FirstFragment extends Fragment {
             return;
         }
         showMessage("Loading application '" + currentApplication + "' for probe " + currentProbe);
+        // the parameter ranges depend on the application
+        commandQueue.reset();
         solum.loadApplication(currentProbe, currentApplication);
     }
 
@@ -267,14 +727,29 @@ public class FirstFragment extends Fragment {
             return;
         }
         showMessage("Printing state in logcat");
-        solum.getParam(Param.Gain, result -> Log.d(TAG, "Gain: " + result.map(Object::toString).orElse("<none>")));
-        solum.getParam(Param.ImageDepth, result -> Log.d(TAG, "Depth: " + result.map(Object::toString).orElse("<none>")));
-        solum.getMode(result -> Log.d(TAG, "Mode: " + result.map(Mode::toString).orElse("<none>")));
-        solum.getTgc(result -> Log.d(TAG, "TGC: " + result.map(Strings::fromTgc).orElse("<none>")));
-        solum.getRoi(6, result -> Log.d(TAG, "ROI: " + Strings.fromPoints(result)));
-        solum.getStatus(result -> Log.d(TAG, "Status: " + result.map(Strings::fromStatusInfo).orElse("<none>")));
-        solum.getProbeInfo(result -> Log.d(TAG, "Probe Info: " + result.map(Strings::fromProbeInfo).orElse("<none>")));
-        solum.getRange(Param.DynamicRange, result -> Log.d(TAG, "Dynamic Range: " + result.map(Strings::fromRange).orElse("<none>")));
+        probeStateService.snapshot().thenAccept(state -> {
+            Log.d(TAG, "Gain: " + state.gain.map(Object::toString).orElse("<none>"));
+            Log.d(TAG, "Depth: " + state.imageDepth.map(Object::toString).orElse("<none>"));
+            Log.d(TAG, "Mode: " + state.mode.map(Mode::toString).orElse("<none>"));
+            Log.d(TAG, "TGC: " + state.tgc.map(Strings::fromTgc).orElse("<none>"));
+            Log.d(TAG, "ROI: " + Strings.fromPoints(state.roi));
+            Log.d(TAG, "Status: " + state.status.map(Strings::fromStatusInfo).orElse("<none>"));
+            Log.d(TAG, "Probe Info: " + state.probeInfo.map(Strings::fromProbeInfo).orElse("<none>"));
+            Log.d(TAG, "Dynamic Range: " + state.dynamicRange.map(Strings::fromRange).orElse("<none>"));
+        });
+        Log.d(TAG, "Frames: " + Strings.fromImageConverter(imageConverter));
+        Log.d(TAG, "Bitmap pool: " + Strings.fromBitmapPool(viewModel.getBitmapPool()));
+        Log.d(TAG, "Commands: " + Strings.fromParamCommandQueue(commandQueue));
+        Log.d(TAG, "Startup:\n" + viewModel.getStartupTrace());
+        Log.d(TAG, "Reconnections: " + Strings.fromReconnectTimes(probeReconnector.getReconnectTimes()));
+        double[] orientation = new double[4];
+        if (imuStream.getRing().orientationAt(lastImageTimestamp, orientation)) {
+            Log.d(TAG, "Orientation at last frame: " + Arrays.toString(orientation));
+        }
+        PresentationScheduler scheduler = viewModel.getPresentationScheduler();
+        if (scheduler != null) {
+            Log.d(TAG, "Presentation: " + Strings.fromPresentationScheduler(scheduler));
+        }
     }
 
     private void doWifiAutoJoin() {
@@ -291,20 +766,51 @@ public class FirstFragment extends Fragment {
             binding.wifiPassphrase.setError("Cannot be empty");
             return;
         }
+        final String macAddress = String.valueOf(binding.macAddress.getText());
+        final Optional<String> maybeMacAddress = macAddress.isEmpty() ? Optional.empty() : Optional.of(macAddress);
+        if (!maybeMacAddress.isPresent() && ContextCompat.checkSelfPermission(requireContext(),
+                Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
+            // the join goes on, the BSSID is reported if the permission is granted in time
+            locationPermission.launch(new String[]{Manifest.permission.ACCESS_FINE_LOCATION,
+                    Manifest.permission.ACCESS_COARSE_LOCATION});
+        }
         showMessage("Auto-joining Wi-Fi " + ssid);
         try {
-            wifiAutoJoin.join(requireContext(), ssid, passphrase, Optional.empty(), new WifiAutoJoin.Result() {
+            probeReconnector.onJoining(ssid);
+            maybeMacAddress.ifPresent(probeReconnector::onBssid);
+            wifiAutoJoin.join(requireContext(), ssid, passphrase, maybeMacAddress, new WifiAutoJoin.Result() {
                 @Override
                 public void accept(boolean result, String ssid, Optional<Long> networkID) {
-                    if (result) {
+                    if (result && networkID.isPresent()) {
+                        viewModel.getStartupTrace().mark("wifi joined");
                         showMessage("Joined Wi-Fi " + ssid);
+                        connectionProfiles.putPassphrase(ssid, passphrase);
+                        probeReconnector.onNetworkAvailable(ssid, networkID.get());
                     } else {
                         showError("Failed to join Wi-Fi " + ssid);
+                        probeReconnector.onNetworkUnavailable();
                     }
                     networkID.ifPresent(v -> binding.networkId.setText(Long.toString(v)));
                 }
+
+                @Override
+                public void onBssid(String ssid, String bssid) {
+                    probeReconnector.onBssid(bssid);
+                    new Handler(Looper.getMainLooper()).post(() -> {
+                        if (binding != null) {
+                            binding.macAddress.setText(bssid);
+                        }
+                    });
+                }
+
+                @Override
+                public void onLost(String ssid) {
+                    showMessage("Lost Wi-Fi " + ssid);
+                    probeReconnector.onNetworkLost();
+                }
             });
         } catch (BadApiLevelException e) {
+            probeReconnector.onNetworkUnavailable();
             showError(e.toString());
             e.printStackTrace();
         }
@@ -312,57 +818,137 @@ public class FirstFragment extends Fragment {
 
     private void showMessage(CharSequence text) {
         Log.d(TAG, (String) text);
-        Handler mainHandler = new Handler(Looper.getMainLooper());
-        mainHandler.post(() -> Toast.makeText(requireContext(), text, Toast.LENGTH_SHORT).show());
+        showToast(text);
     }
 
     private void showError(CharSequence text) {
         Log.e(TAG, "Error: " + text);
-        Handler mainHandler = new Handler(Looper.getMainLooper());
-        mainHandler.post(() -> Toast.makeText(requireContext(), text, Toast.LENGTH_SHORT).show());
+        showToast(text);
     }
 
-    private class RawDataCallback {
-        void requestResult(int result) {
-            Log.d(TAG, "Raw data request: " + result);
-            if (result < 0) {
-                showError("Failed to request raw data (ensure buffering is enabled and probe is frozen)");
-            } else if (result == 0) {
-                showError("No raw data available");
-            } else {
-                solum.readRawData(this::retrieved, this::progress);
+    // Background work may report after the view is destroyed, the message is then only logged.
+    private void showToast(CharSequence text) {
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        mainHandler.post(() -> {
+            if (binding != null) {
+                Toast.makeText(requireContext(), text, Toast.LENGTH_SHORT).show();
             }
+        });
+    }
+
+    private class RawDataListener implements RawDataDownload.Listener {
+        @Override
+        public void onTransferProgress(int progress, int total) {
+            showProgress(progress, total);
         }
 
-        void retrieved(int result, ByteBuffer data) {
-            Log.d(TAG, "Raw data read: " + result);
-            if (result < 0) {
-                showError("Failed to read raw data (ensure buffering is enabled and probe is frozen)");
-            } else if (result == 0) {
-                showError("No raw data available");
-            } else {
-                showMessage("Raw data size: " + result + " bytes");
+        @Override
+        public void onWriteProgress(long written, long total) {
+            // the progress bar only takes ints
+            showProgress((int) (written / 1024), (int) (total / 1024));
+        }
+
+        @Override
+        public void onComplete(File file, long size) {
+            finished();
+            showMessage("Raw data saved: " + file + " (" + size + " bytes)");
+            // called on the Solum callback thread, walking the package headers can take a while
+            ioExecutorService.execute(() -> {
+                // the package is only indexed, not loaded
+                try (RawPackageReader reader = new RawPackageReader(file)) {
+                    for (RawPackageReader.Stream stream : reader.getStreams()) {
+                        Log.d(TAG, "Raw stream: " + Strings.fromRawStream(stream));
+                    }
+                } catch (IOException e) {
+                    showError("Failed to read raw data package: " + e);
+                }
+            });
+        }
+
+        @Override
+        public void onCancelled() {
+            finished();
+            showMessage("Raw data download cancelled");
+        }
+
+        @Override
+        public void onError(String message) {
+            finished();
+            showError(message);
+        }
+
+        private void showProgress(int progress, int total) {
+            new Handler(Looper.getMainLooper()).post(() -> {
+                if (binding != null) {
+                    binding.progressBar.setMax(total);
+                    binding.progressBar.setProgress(progress);
+                }
+            });
+        }
+
+        private void finished() {
+            new Handler(Looper.getMainLooper()).post(() -> rawDataDownload = null);
+        }
+    }
+
+    private class CommandListener implements ParamCommandQueue.Listener {
+        @Override
+        public void onParamApplied(Param param, double requested, Optional<Double> applied) {
+            probeStateService.onParamChanged(param);
+            Log.d(TAG, "Applied " + param + ": " + applied.map(Object::toString).orElse("<none>")
+                    + " (requested " + requested + ")");
+            if (param == Param.Gain && applied.isPresent()) {
+                // move the slider to the value the probe actually applied
+                final int gain = (int) Math.round(applied.get());
+                new Handler(Looper.getMainLooper()).post(() -> {
+                    if (binding != null) {
+                        binding.gainSeekBar.setProgress(gain);
+                    }
+                });
             }
         }
 
-        void progress(int progress, int total) {
-            binding.progressBar.setMax(total);
-            binding.progressBar.setProgress(progress);
+        @Override
+        public void onTgcApplied(Tgc requested, Optional<Tgc> applied) {
+            probeStateService.onTgcChanged();
+            Log.d(TAG, "Applied TGC: " + applied.map(Strings::fromTgc).orElse("<none>"));
         }
     }
 
-    private class ImageCallback implements ImageConverter.Callback {
+    private class RawImageCallback implements RawImageConverter.Callback {
         private final MutableLiveData<Bitmap> dest;
 
-        ImageCallback(MutableLiveData<Bitmap> dest) {
+        RawImageCallback(MutableLiveData<Bitmap> dest) {
             this.dest = dest;
         }
 
         @Override
-        public void onResult(Bitmap bitmap) {
+        public void onResult(Bitmap bitmap, RawImageInfo info) {
             dest.postValue(bitmap);
         }
 
+        @Override
+        public void onError(Exception e) {
+            showError("Error while converting raw image: " + e);
+        }
+    }
+
+    private class ImageCallback implements ImageConverter.Callback {
+        private final SolumViewModel dest;
+        private final VolumeSweep volumeSweep;
+
+        ImageCallback(SolumViewModel dest, VolumeSweep volumeSweep) {
+            this.dest = dest;
+            this.volumeSweep = volumeSweep;
+        }
+
+        @Override
+        public void onResult(Bitmap bitmap, ProcessedImageInfo info) {
+            // read the pixels before the bitmap is handed over for display
+            volumeSweep.offer(bitmap, info);
+            dest.publishImage(bitmap, info);
+        }
+
         @Override
         public void onError(Exception e) {
             showError("Error while converting image: " + e);
@@ -0,0 +1,105 @@
+package me.clarius.sdk.solum.example;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ring of pre-allocated direct buffers holding frame data.
+ * <p>
+ * The buffer received from Solum is only valid during the listener call, so each frame is copied once into a
+ * buffer acquired here; the buffer is owned by the caller until it is released.
+ * The number of buffers is fixed: when all of them are in use, acquire() fails and the frame should be dropped,
+ * which also bounds the amount of pending work.
+ * A buffer too small for a frame is replaced by a larger one, then kept for the following frames.
+ */
+
+public class FrameBufferPool {
+    private final ArrayBlockingQueue<ByteBuffer> free;
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private final AtomicLong exhaustedCount = new AtomicLong();
+
+    public FrameBufferPool(int count, int initialCapacity) {
+        free = new ArrayBlockingQueue<>(count);
+        for (int i = 0; i < count; ++i) {
+            free.add(allocate(initialCapacity));
+        }
+    }
+
+    /**
+     * Acquire a buffer with at least size bytes, its position is zero and its limit is size.
+     *
+     * @return the buffer, or null if all the buffers are in use.
+     */
+    public ByteBuffer acquire(int size) {
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            exhaustedCount.incrementAndGet();
+            return null;
+        }
+        if (buffer.capacity() < size) {
+            allocatedBytes.addAndGet(-buffer.capacity());
+            buffer = allocate(size);
+        }
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    /**
+     * Acquire a buffer and copy the remaining bytes of the source, up to size bytes.
+     * The source position is left unchanged.
+     *
+     * @return the buffer ready to be read, or null if all the buffers are in use.
+     */
+    public ByteBuffer copyOf(ByteBuffer source, int size) {
+        final int position = source.position();
+        final int limit = source.limit();
+        final int length = Math.min(size, limit - position);
+        ByteBuffer buffer = acquire(length);
+        if (buffer == null) {
+            return null;
+        }
+        source.limit(position + length);
+        buffer.put(source);
+        source.limit(limit);
+        source.position(position);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Give back a buffer obtained from acquire(), the caller must not use it afterwards.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer != null && !free.offer(buffer)) {
+            throw new IllegalStateException("buffer released twice");
+        }
+    }
+
+    /**
+     * Number of buffers currently available.
+     */
+    public int getAvailableCount() {
+        return free.size();
+    }
+
+    /**
+     * Number of failed acquisitions because all the buffers were in use.
+     */
+    public long getExhaustedCount() {
+        return exhaustedCount.get();
+    }
+
+    /**
+     * Total size of the direct memory allocated by the pool.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        allocatedBytes.addAndGet(capacity);
+        return ByteBuffer.allocateDirect(capacity);
+    }
+}
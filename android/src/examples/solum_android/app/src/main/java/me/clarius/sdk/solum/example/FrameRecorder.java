@@ -0,0 +1,297 @@
+package me.clarius.sdk.solum.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Record frames into an append-only directory, written by a background thread.
+ * <p>
+ * Frames are appended to fixed-size segment files mapped in memory, a frame never spans two segments.
+ * Each frame is a fixed-size header followed by its data. An index file holds one fixed-size entry per frame
+ * (timestamp and position), so frames can be located by number in O(1) and by timestamp with a binary search,
+ * see RecordingReader.
+ * <p>
+ * record() copies the frame into a pooled buffer and returns, it never waits for the disk; frames are dropped
+ * only if the writer falls behind by more than the pool size. Data and index are synced to the storage in batches,
+ * and the index is only written after the frames it points to, so a recording cut short stays readable up to the
+ * last batch.
+ */
+
+public class FrameRecorder implements AutoCloseable {
+    static final int INDEX_MAGIC = 0x434c5249;
+    static final int VERSION = 1;
+    static final int INDEX_HEADER_SIZE = 16;
+    static final int INDEX_ENTRY_SIZE = 16;
+    static final int FRAME_HEADER_SIZE = 56;
+    static final String INDEX_FILE = "index.bin";
+    // image format codes, the values of CusImageFormat in the C API, stable whatever the order of the SDK enum
+    public static final int FORMAT_UNCOMPRESSED = 0;
+    public static final int FORMAT_JPEG = 1;
+    public static final int FORMAT_PNG = 2;
+
+    private static final int INITIAL_FRAME_CAPACITY = 1024 * 1024;
+    private static final int SYNC_FRAMES = 30;
+    private static final long SYNC_INTERVAL_MILLIS = 1000;
+    private static final Pending END = new Pending(null, null);
+
+    private final File directory;
+    private final long segmentSize;
+    private final FrameBufferPool framePool;
+    private final BlockingQueue<Pending> queue;
+    private final Thread writer;
+    private final FileChannel index;
+    private final ByteBuffer pendingEntries = ByteBuffer.allocate(INDEX_ENTRY_SIZE * SYNC_FRAMES);
+    private final AtomicLong recordedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private volatile boolean closed = false;
+    private volatile IOException failure;
+    // accessed by the writer thread only
+    private int segmentNumber = -1;
+    private FileChannel segment;
+    private MappedByteBuffer mapped;
+    private long lastSync = System.currentTimeMillis();
+
+    /**
+     * @param directory     empty or missing directory receiving the recording.
+     * @param segmentSize   size of each segment file, frames larger than this cannot be recorded.
+     * @param backlogFrames number of frames that can wait for the writer.
+     */
+    public FrameRecorder(File directory, long segmentSize, int backlogFrames) throws IOException {
+        if (segmentSize <= FRAME_HEADER_SIZE || segmentSize > Integer.MAX_VALUE || backlogFrames <= 0)
+            throw new IllegalArgumentException("invalid recorder settings");
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("cannot create " + directory);
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.framePool = new FrameBufferPool(backlogFrames, INITIAL_FRAME_CAPACITY);
+        // one more slot for the end marker
+        this.queue = new ArrayBlockingQueue<>(backlogFrames + 1);
+        this.index = new RandomAccessFile(new File(directory, INDEX_FILE), "rw").getChannel();
+        ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_SIZE);
+        header.putInt(INDEX_MAGIC).putInt(VERSION).putLong(segmentSize).flip();
+        index.truncate(0);
+        index.write(header, 0);
+        index.position(INDEX_HEADER_SIZE);
+        this.writer = new Thread(this::writeLoop, "FrameRecorder");
+        this.writer.start();
+    }
+
+    static String segmentName(int number) {
+        return String.format(Locale.ROOT, "segment-%05d.bin", number);
+    }
+
+    /**
+     * Queue a frame, the data is copied before returning and the buffer position is left unchanged.
+     *
+     * @return false if the frame was dropped.
+     */
+    public boolean record(Header header, ByteBuffer data) {
+        if (closed || failure != null || FRAME_HEADER_SIZE + (long) header.length > segmentSize) {
+            droppedCount.incrementAndGet();
+            return false;
+        }
+        final ByteBuffer frame = framePool.copyOf(data, header.length);
+        if (frame == null) {
+            droppedCount.incrementAndGet();
+            return false;
+        }
+        // cannot fail: there is a queue slot for each pooled buffer
+        queue.add(new Pending(header, frame));
+        return true;
+    }
+
+    /**
+     * Number of frames written.
+     */
+    public long getRecordedCount() {
+        return recordedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Write the pending frames, sync and close the files.
+     *
+     * @throws IOException if writing failed at some point.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            // waits for a free slot if the backlog is full
+            queue.put(END);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        index.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            while (true) {
+                Pending pending;
+                try {
+                    pending = queue.poll(SYNC_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (pending == END) {
+                    break;
+                }
+                if (pending == null) {
+                    sync();
+                    continue;
+                }
+                try {
+                    write(pending);
+                } finally {
+                    framePool.release(pending.data);
+                }
+                if (!pendingEntries.hasRemaining()
+                        || System.currentTimeMillis() - lastSync >= SYNC_INTERVAL_MILLIS) {
+                    sync();
+                }
+            }
+            sync();
+            closeSegment();
+        } catch (IOException e) {
+            failure = e;
+            Pending pending;
+            while ((pending = queue.poll()) != null) {
+                if (pending != END) {
+                    framePool.release(pending.data);
+                    droppedCount.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private void write(Pending pending) throws IOException {
+        final Header h = pending.header;
+        // the data may be shorter than announced by the header
+        final int length = pending.data.remaining();
+        if (mapped == null || mapped.remaining() < FRAME_HEADER_SIZE + length) {
+            nextSegment();
+        }
+        final long position = segmentNumber * segmentSize + mapped.position();
+        mapped.putLong(h.timestamp)
+                .putInt(h.format)
+                .putInt(h.width)
+                .putInt(h.height)
+                .putInt(h.bitsPerPixel)
+                .putDouble(h.micronsPerPixel)
+                .putDouble(h.originX)
+                .putDouble(h.originY)
+                .putInt(length)
+                .putInt(0);
+        mapped.put(pending.data);
+        pendingEntries.putLong(h.timestamp).putLong(position);
+        recordedCount.incrementAndGet();
+    }
+
+    // Frames are forced to the storage before the index entries pointing to them.
+    private void sync() throws IOException {
+        if (pendingEntries.position() == 0) {
+            return;
+        }
+        mapped.force();
+        pendingEntries.flip();
+        while (pendingEntries.hasRemaining()) {
+            index.write(pendingEntries);
+        }
+        pendingEntries.clear();
+        index.force(false);
+        lastSync = System.currentTimeMillis();
+    }
+
+    private void nextSegment() throws IOException {
+        sync();
+        closeSegment();
+        ++segmentNumber;
+        segment = new RandomAccessFile(new File(directory, segmentName(segmentNumber)), "rw").getChannel();
+        mapped = segment.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    }
+
+    private void closeSegment() throws IOException {
+        if (segment == null) {
+            return;
+        }
+        final int used = mapped.position();
+        mapped.force();
+        mapped = null;
+        // drop the unused tail of the segment
+        segment.truncate(used);
+        segment.close();
+        segment = null;
+    }
+
+    /**
+     * Description of a recorded frame.
+     */
+    public static final class Header {
+        public final long timestamp;
+        public final int format;
+        public final int width;
+        public final int height;
+        public final int bitsPerPixel;
+        public final double micronsPerPixel;
+        public final double originX;
+        public final double originY;
+        public final int length;
+
+        /**
+         * @param format one of the FORMAT_* codes, see RecordingFormats.
+         * @param length size of the frame data in bytes.
+         */
+        public Header(long timestamp, int format, int width, int height, int bitsPerPixel,
+                      double micronsPerPixel, double originX, double originY, int length) {
+            this.timestamp = timestamp;
+            this.format = format;
+            this.width = width;
+            this.height = height;
+            this.bitsPerPixel = bitsPerPixel;
+            this.micronsPerPixel = micronsPerPixel;
+            this.originX = originX;
+            this.originY = originY;
+            this.length = length;
+        }
+
+        static Header read(ByteBuffer buffer, int offset) {
+            return new Header(buffer.getLong(offset), buffer.getInt(offset + 8), buffer.getInt(offset + 12),
+                    buffer.getInt(offset + 16), buffer.getInt(offset + 20), buffer.getDouble(offset + 24),
+                    buffer.getDouble(offset + 32), buffer.getDouble(offset + 40), buffer.getInt(offset + 48));
+        }
+    }
+
+    private static final class Pending {
+        final Header header;
+        final ByteBuffer data;
+
+        Pending(Header header, ByteBuffer data) {
+            this.header = header;
+            this.data = data;
+        }
+    }
+}
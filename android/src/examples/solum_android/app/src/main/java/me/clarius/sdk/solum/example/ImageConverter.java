@@ -5,61 +5,309 @@ import android.graphics.BitmapFactory;
 
 import java.nio.ByteBuffer;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import me.clarius.sdk.ImageFormat;
 import me.clarius.sdk.ProcessedImageInfo;
 
 /**
  * Convert image data in separate thread to avoid blocking Solum
+ * <p>
+ * In mode QUEUE, every frame is converted in arrival order, the display lags behind if the conversion is too slow.
+ * In mode CONFLATE, only the newest pending frame is kept and stale frames are dropped before being converted,
+ * so the lag stays around one frame; this mode expects a single-thread executor.
+ * In mode PARALLEL, frames are converted concurrently by a multi-thread executor and delivered in timestamp order,
+ * at most reorderWindow frames are in flight and frames completing too late are dropped.
+ * <p>
+ * The buffer passed by Solum is only valid during the listener call: each frame is copied once into a pooled
+ * direct buffer owned by the converter until it is decoded, frames are dropped if no buffer is available.
+ * <p>
+ * Compressed frames larger than the target size are decoded with a power of two subsampling, down to the
+ * smallest size still covering the target, so the pixels never shown are not decoded. The info passed to the
+ * callback then describes the decoded bitmap: its size, and the microns per pixel scaled by the sample size.
  */
 
 public class ImageConverter {
+    private static final int DEFAULT_REORDER_WINDOW = 8;
+    private static final int INITIAL_FRAME_CAPACITY = 1024 * 1024;
+    private static final int DECODE_TEMP_STORAGE = 16 * 1024;
     private final Executor executor;
+    private final Mode mode;
+    private final BitmapPool bitmapPool;
     private final Callback callback;
+    private final ThreadLocal<Decoder> decoders = new ThreadLocal<Decoder>() {
+        @Override
+        protected Decoder initialValue() {
+            return new Decoder();
+        }
+    };
+    private final FrameBufferPool framePool;
+    private final ReorderBuffer<DecodedFrame> reorderBuffer;
+    private final AtomicReference<PendingFrame> pendingFrame = new AtomicReference<>();
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong renderedCount = new AtomicLong();
+    private final AtomicLong subsampledCount = new AtomicLong();
+    private volatile LatencyTracker latencyTracker;
+    private volatile int targetWidth = 0;
+    private volatile int targetHeight = 0;
+
+    ImageConverter(Executor executor, Mode mode, BitmapPool bitmapPool, Callback callback) {
+        this(executor, mode, DEFAULT_REORDER_WINDOW, bitmapPool, callback);
+    }
 
-    ImageConverter(Executor executor, Callback callback) {
+    ImageConverter(Executor executor, Mode mode, int reorderWindow, BitmapPool bitmapPool, Callback callback) {
         this.executor = executor;
+        this.mode = mode;
+        this.bitmapPool = bitmapPool;
         this.callback = callback;
+        this.reorderBuffer = new ReorderBuffer<>(reorderWindow, this::deliver, this::discard);
+        // enough buffers for the frames in flight plus the one being copied
+        this.framePool = new FrameBufferPool(reorderWindow + 2, INITIAL_FRAME_CAPACITY);
     }
 
+    /**
+     * Queue a frame for conversion, the buffer is copied before returning and can be reused by the caller.
+     */
     public void convertImage(ByteBuffer buffer, ProcessedImageInfo info) {
-        executor.execute(() -> {
-            try {
-                Bitmap bitmap = doConvert(buffer, info);
-                callback.onResult(bitmap);
-            } catch (Exception e) {
-                callback.onError(e);
+        submittedCount.incrementAndGet();
+        if (mode == Mode.PARALLEL) {
+            final long sequence = reorderBuffer.submit(info.tm);
+            if (sequence < 0) {
+                droppedCount.incrementAndGet();
+                return;
+            }
+            final ByteBuffer frame = framePool.copyOf(buffer, info.imageSize);
+            if (frame == null) {
+                droppedCount.incrementAndGet();
+                reorderBuffer.complete(sequence, null);
+                return;
+            }
+            executor.execute(() -> convertOrdered(sequence, frame, info));
+            return;
+        }
+        final ByteBuffer frame = framePool.copyOf(buffer, info.imageSize);
+        if (frame == null) {
+            droppedCount.incrementAndGet();
+            return;
+        }
+        if (mode == Mode.CONFLATE) {
+            PendingFrame stale = pendingFrame.getAndSet(new PendingFrame(frame, info));
+            if (stale != null) {
+                // a conversion is already scheduled and will pick the new frame
+                framePool.release(stale.buffer);
+                droppedCount.incrementAndGet();
+            } else {
+                executor.execute(this::convertPending);
             }
-        });
+        } else {
+            executor.execute(() -> convert(frame, info));
+        }
+    }
+
+    /**
+     * Number of frames given to the converter.
+     */
+    public long getSubmittedCount() {
+        return submittedCount.get();
+    }
+
+    /**
+     * Number of frames discarded before conversion because a newer frame arrived.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Number of frames converted and passed to the callback.
+     */
+    public long getRenderedCount() {
+        return renderedCount.get();
+    }
+
+    /**
+     * Number of compressed frames decoded at a reduced size.
+     */
+    public long getSubsampledCount() {
+        return subsampledCount.get();
+    }
+
+    /**
+     * Size the images are shown at, or 0 to always decode at full size.
+     */
+    public void setTargetSize(int width, int height) {
+        targetWidth = width;
+        targetHeight = height;
+    }
+
+    /**
+     * Report the decoding stages of the frames, or null to stop.
+     */
+    public void setLatencyTracker(LatencyTracker tracker) {
+        latencyTracker = tracker;
+    }
+
+    private void convertPending() {
+        PendingFrame frame = pendingFrame.getAndSet(null);
+        if (frame != null) {
+            convert(frame.buffer, frame.info);
+        }
+    }
+
+    private void convertOrdered(long sequence, ByteBuffer frame, ProcessedImageInfo info) {
+        DecodedFrame decoded = null;
+        try {
+            decoded = doConvert(frame, info);
+        } catch (Exception e) {
+            callback.onError(e);
+        } finally {
+            framePool.release(frame);
+        }
+        reorderBuffer.complete(sequence, decoded);
+    }
+
+    private void deliver(DecodedFrame decoded) {
+        renderedCount.incrementAndGet();
+        callback.onResult(decoded.bitmap, decoded.info);
+    }
+
+    private void discard(DecodedFrame decoded) {
+        droppedCount.incrementAndGet();
+        bitmapPool.release(decoded.bitmap);
     }
 
-    private Bitmap doConvert(ByteBuffer buffer, ProcessedImageInfo info) {
+    private void convert(ByteBuffer frame, ProcessedImageInfo info) {
+        try {
+            DecodedFrame decoded = doConvert(frame, info);
+            renderedCount.incrementAndGet();
+            callback.onResult(decoded.bitmap, decoded.info);
+        } catch (Exception e) {
+            callback.onError(e);
+        } finally {
+            framePool.release(frame);
+        }
+    }
+
+    private DecodedFrame doConvert(ByteBuffer frame, ProcessedImageInfo info) {
+        final LatencyTracker tracker = latencyTracker;
+        if (tracker != null) {
+            tracker.onDecodeStarted(info.tm);
+        }
         boolean isCompressed = info.format != ImageFormat.Uncompressed;
+        int sampleSize = 1;
         Bitmap bitmap;
         if (isCompressed) {
-            if (buffer.hasArray()) {
-                byte[] bytes = buffer.array();
-                int offset = buffer.arrayOffset();
-                int length = info.imageSize;
-                assert offset + length < bytes.length;
-                bitmap = BitmapFactory.decodeByteArray(bytes, offset, length);
-            } else {
-                byte[] bytes = new byte[buffer.capacity()];
-                buffer.get(bytes);
-                bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
-            }
+            sampleSize = sampleSize(info.width, info.height, targetWidth, targetHeight);
+            bitmap = decoders.get().decode(frame, info, sampleSize);
         } else {
-            bitmap = Bitmap.createBitmap(info.width, info.height, Bitmap.Config.ARGB_8888);
-            bitmap.copyPixelsFromBuffer(buffer);
+            bitmap = bitmapPool.acquire(info.width, info.height, Bitmap.Config.ARGB_8888);
+            bitmap.copyPixelsFromBuffer(frame);
         }
         if (bitmap == null)
             throw new AssertionError("bad image data");
-        return bitmap;
+        if (tracker != null) {
+            tracker.onDecodeFinished(info.tm);
+        }
+        return new DecodedFrame(bitmap, sampleSize > 1 ? subsampled(info, bitmap, sampleSize) : info);
+    }
+
+    // Info of a subsampled bitmap, with the fields read by the app; the origin is in microns and does not change.
+    private static ProcessedImageInfo subsampled(ProcessedImageInfo info, Bitmap bitmap, int sampleSize) {
+        final ProcessedImageInfo scaled = new ProcessedImageInfo();
+        scaled.width = bitmap.getWidth();
+        scaled.height = bitmap.getHeight();
+        scaled.bitsPerPixel = info.bitsPerPixel;
+        scaled.imageSize = info.imageSize;
+        scaled.micronsPerPixel = info.micronsPerPixel * sampleSize;
+        scaled.originX = info.originX;
+        scaled.originY = info.originY;
+        scaled.tm = info.tm;
+        scaled.format = info.format;
+        return scaled;
+    }
+
+    // Largest power of two keeping the image at least as large as it is shown when fitted in the target.
+    static int sampleSize(int width, int height, int targetWidth, int targetHeight) {
+        if (targetWidth <= 0 || targetHeight <= 0 || width <= 0 || height <= 0) {
+            return 1;
+        }
+        final double shown = Math.min((double) targetWidth / width, (double) targetHeight / height);
+        int sampleSize = 1;
+        while (shown * sampleSize * 2 <= 1) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    enum Mode {
+        QUEUE,
+        CONFLATE,
+        PARALLEL
     }
 
     interface Callback {
-        void onResult(Bitmap bitmap);
+        /**
+         * Receive a converted image, the bitmap comes from the pool and should be released once not needed anymore.
+         */
+        void onResult(Bitmap bitmap, ProcessedImageInfo info);
 
         void onError(Exception e);
     }
+
+    // Per-thread decoding state, reused across frames.
+    private final class Decoder {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        final ByteBufferInputStream stream = new ByteBufferInputStream();
+
+        Decoder() {
+            options.inMutable = true;
+            options.inTempStorage = new byte[DECODE_TEMP_STORAGE];
+        }
+
+        // Decode into a pooled bitmap if one matches the decoded size, fall back to a fresh bitmap otherwise.
+        Bitmap decode(ByteBuffer frame, ProcessedImageInfo info, int sampleSize) {
+            if (sampleSize > 1) {
+                subsampledCount.incrementAndGet();
+            }
+            options.inSampleSize = sampleSize;
+            Bitmap reusable = bitmapPool.poll(info.width / sampleSize, info.height / sampleSize,
+                    Bitmap.Config.ARGB_8888);
+            options.inBitmap = reusable;
+            stream.reset(frame);
+            try {
+                return BitmapFactory.decodeStream(stream, null, options);
+            } catch (IllegalArgumentException e) {
+                // the encoded image does not fit in the pooled bitmap
+                options.inBitmap = null;
+                bitmapPool.release(reusable);
+                stream.reset();
+                return BitmapFactory.decodeStream(stream, null, options);
+            } finally {
+                options.inBitmap = null;
+                stream.reset(null);
+            }
+        }
+    }
+
+    private static final class DecodedFrame {
+        final Bitmap bitmap;
+        final ProcessedImageInfo info;
+
+        DecodedFrame(Bitmap bitmap, ProcessedImageInfo info) {
+            this.bitmap = bitmap;
+            this.info = info;
+        }
+    }
+
+    private static final class PendingFrame {
+        final ByteBuffer buffer;
+        final ProcessedImageInfo info;
+
+        PendingFrame(ByteBuffer buffer, ProcessedImageInfo info) {
+            this.buffer = buffer;
+            this.info = info;
+        }
+    }
 }
@@ -0,0 +1,182 @@
+package me.clarius.sdk.solum.example;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ring of IMU samples stored in atomic primitive arrays, written by one thread and queried lock-free by others.
+ * <p>
+ * Each sample is a timestamp and 13 values: gyroscope, accelerometer, magnetometer (x, y, z) and the orientation
+ * quaternion (w, x, y, z), see the *_X constants for their offsets.
+ * Samples must be pushed in increasing timestamp order; the oldest samples are overwritten when the ring is full.
+ * Readers interpolate between the two samples surrounding a timestamp: spherical linear interpolation for the
+ * orientation, linear interpolation for the acceleration. A read racing with the writer overwriting its samples
+ * is retried. The arrays are atomic, doubles stored as raw bits, so the reads cannot be reordered after the final
+ * check of the published count; plain arrays would need an acquire fence, which Java 8 does not offer.
+ */
+
+public class ImuRing {
+    public static final int GYRO_X = 0;
+    public static final int ACCEL_X = 3;
+    public static final int MAG_X = 6;
+    public static final int QUAT_W = 9;
+    public static final int VALUES = 13;
+
+    private static final int MAX_RETRIES = 4;
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicLongArray timestamps;
+    private final AtomicLongArray values;
+    // number of samples published, written by the producer only
+    private final AtomicLong published = new AtomicLong();
+
+    /**
+     * @param capacity number of samples retained, rounded up to a power of two.
+     */
+    public ImuRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity));
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.capacity = size;
+        this.mask = size - 1;
+        this.timestamps = new AtomicLongArray(size);
+        this.values = new AtomicLongArray(size * VALUES);
+    }
+
+    /**
+     * Append a sample, must always be called from the same thread.
+     *
+     * @param values VALUES values starting at offset, copied.
+     */
+    public void push(long timestamp, double[] values, int offset) {
+        final long index = published.get();
+        final int slot = (int) (index & mask);
+        // release stores, visible after the previous count: a reader seeing them then reads a count of index or more
+        timestamps.lazySet(slot, timestamp);
+        for (int i = 0; i < VALUES; ++i) {
+            this.values.lazySet(slot * VALUES + i, Double.doubleToRawLongBits(values[offset + i]));
+        }
+        // publish after the sample is written
+        published.lazySet(index + 1);
+    }
+
+    /**
+     * Number of samples pushed since creation.
+     */
+    public long getCount() {
+        return published.get();
+    }
+
+    /**
+     * Interpolate the orientation at a timestamp.
+     *
+     * @param quaternion output w, x, y, z.
+     * @return false if no sample is retained for this time.
+     */
+    public boolean orientationAt(long timestamp, double[] quaternion) {
+        return interpolate(timestamp, quaternion, true);
+    }
+
+    /**
+     * Interpolate the acceleration at a timestamp.
+     *
+     * @param acceleration output x, y, z, normalized to gravity.
+     * @return false if no sample is retained for this time.
+     */
+    public boolean accelerationAt(long timestamp, double[] acceleration) {
+        return interpolate(timestamp, acceleration, false);
+    }
+
+    private boolean interpolate(long timestamp, double[] out, boolean orientation) {
+        for (int attempt = 0; attempt < MAX_RETRIES; ++attempt) {
+            final long end = published.get();
+            // the slot of end - capacity may be being overwritten by the sample end
+            final long begin = Math.max(0, end - capacity + 1);
+            if (begin == end) {
+                return false;
+            }
+            // last sample at or before the timestamp
+            long low = begin;
+            long high = end - 1;
+            if (timestamps.get(slot(low)) > timestamp) {
+                return false;
+            }
+            while (low < high) {
+                final long mid = (low + high + 1) >>> 1;
+                if (timestamps.get(slot(mid)) <= timestamp) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            final long next = Math.min(low + 1, end - 1);
+            final long t0 = timestamps.get(slot(low));
+            final long t1 = timestamps.get(slot(next));
+            final double ratio = t1 > t0 ? Math.min(1.0, (double) (timestamp - t0) / (t1 - t0)) : 0;
+            if (orientation) {
+                slerp(slot(low) * VALUES + QUAT_W, slot(next) * VALUES + QUAT_W, ratio, out);
+            } else {
+                lerp(slot(low) * VALUES + ACCEL_X, slot(next) * VALUES + ACCEL_X, ratio, out);
+            }
+            // the samples read are still valid if the writer did not wrap over them meanwhile: the writer of
+            // sample n overwrites n - capacity, and may be at sample published while the count is not updated yet
+            if (published.get() - capacity < Math.min(low, next)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void lerp(int a, int b, double ratio, double[] out) {
+        for (int i = 0; i < 3; ++i) {
+            final double va = value(a + i);
+            out[i] = va + (value(b + i) - va) * ratio;
+        }
+    }
+
+    private void slerp(int a, int b, double ratio, double[] out) {
+        double w0 = value(a), x0 = value(a + 1), y0 = value(a + 2), z0 = value(a + 3);
+        double w1 = value(b), x1 = value(b + 1), y1 = value(b + 2), z1 = value(b + 3);
+        double dot = w0 * w1 + x0 * x1 + y0 * y1 + z0 * z1;
+        // take the shortest path
+        if (dot < 0) {
+            w1 = -w1;
+            x1 = -x1;
+            y1 = -y1;
+            z1 = -z1;
+            dot = -dot;
+        }
+        double k0, k1;
+        if (dot > 0.9995) {
+            k0 = 1 - ratio;
+            k1 = ratio;
+        } else {
+            final double theta = Math.acos(dot);
+            final double sin = Math.sin(theta);
+            k0 = Math.sin((1 - ratio) * theta) / sin;
+            k1 = Math.sin(ratio * theta) / sin;
+        }
+        double w = k0 * w0 + k1 * w1, x = k0 * x0 + k1 * x1, y = k0 * y0 + k1 * y1, z = k0 * z0 + k1 * z1;
+        final double norm = Math.sqrt(w * w + x * x + y * y + z * z);
+        if (norm > 0) {
+            w /= norm;
+            x /= norm;
+            y /= norm;
+            z /= norm;
+        }
+        out[0] = w;
+        out[1] = x;
+        out[2] = y;
+        out[3] = z;
+    }
+
+    private double value(int index) {
+        return Double.longBitsToDouble(values.get(index));
+    }
+
+    private int slot(long index) {
+        return (int) (index & mask);
+    }
+}
@@ -0,0 +1,50 @@
+package me.clarius.sdk.solum.example;
+
+import me.clarius.sdk.PosInfo;
+
+/**
+ * Feed the positional data received with the images into an IMU ring.
+ * <p>
+ * The same sample can be sent with consecutive images, only samples newer than the last one pushed are kept.
+ * Must be fed from a single thread, typically the processed image listener.
+ */
+
+public class ImuStream {
+    private final ImuRing ring;
+    private final double[] values = new double[ImuRing.VALUES];
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    public ImuStream(int capacity) {
+        ring = new ImuRing(capacity);
+    }
+
+    public ImuRing getRing() {
+        return ring;
+    }
+
+    public void push(PosInfo[] positions) {
+        if (positions == null) {
+            return;
+        }
+        for (PosInfo pos : positions) {
+            if (pos == null || pos.tm <= lastTimestamp) {
+                continue;
+            }
+            lastTimestamp = pos.tm;
+            values[ImuRing.GYRO_X] = pos.gx;
+            values[ImuRing.GYRO_X + 1] = pos.gy;
+            values[ImuRing.GYRO_X + 2] = pos.gz;
+            values[ImuRing.ACCEL_X] = pos.ax;
+            values[ImuRing.ACCEL_X + 1] = pos.ay;
+            values[ImuRing.ACCEL_X + 2] = pos.az;
+            values[ImuRing.MAG_X] = pos.mx;
+            values[ImuRing.MAG_X + 1] = pos.my;
+            values[ImuRing.MAG_X + 2] = pos.mz;
+            values[ImuRing.QUAT_W] = pos.qw;
+            values[ImuRing.QUAT_W + 1] = pos.qx;
+            values[ImuRing.QUAT_W + 2] = pos.qy;
+            values[ImuRing.QUAT_W + 3] = pos.qz;
+            ring.push(pos.tm, values, 0);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package me.clarius.sdk.solum.example;
+
+import android.widget.TextView;
+
+/**
+ * Periodically show the latency percentiles of each stage in a text view, from the main thread.
+ */
+
+public class LatencyOverlay {
+    private static final long REFRESH_PERIOD_MS = 500;
+
+    private final LatencyTracker tracker;
+    private final Runnable refresh = this::refresh;
+    private TextView view;
+
+    public LatencyOverlay(LatencyTracker tracker) {
+        this.tracker = tracker;
+    }
+
+    public void start(TextView view) {
+        stop();
+        this.view = view;
+        view.post(refresh);
+    }
+
+    public void stop() {
+        if (view != null) {
+            view.removeCallbacks(refresh);
+            view = null;
+        }
+    }
+
+    private void refresh() {
+        if (view == null) {
+            return;
+        }
+        view.setText(Strings.fromLatencyTracker(tracker));
+        view.postDelayed(refresh, REFRESH_PERIOD_MS);
+    }
+}
@@ -0,0 +1,164 @@
+package me.clarius.sdk.solum.example;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Measure the time spent by each frame in each stage of the pipeline.
+ * <p>
+ * Frames are identified by their timestamp; each pipeline step marks the frame when it is reached and the time
+ * since the previous step goes into the histogram of the corresponding stage. Marks are kept in a fixed table
+ * indexed by a hash of the timestamp, so marking is lock-free and does not allocate; a frame evicted by a newer
+ * frame with the same hash just loses its remaining stages.
+ * <p>
+ * The probe clock is not synchronized with the device clock: the network stage is the transit time
+ * (arrival minus probe timestamp) above the shortest transit seen, i.e. the delay added by the network and the
+ * listener dispatch on top of the best case.
+ */
+
+public class LatencyTracker {
+    private static final int MARKS = 4;
+    private static final int RECEIVED = 0;
+    private static final int DECODE_START = 1;
+    private static final int DECODE_END = 2;
+    private static final int PRESENTED = 3;
+
+    private final int mask;
+    private final int shift;
+    private final AtomicLongArray timestamps;
+    private final AtomicLongArray marks;
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+    private final AtomicLong minTransit = new AtomicLong(Long.MAX_VALUE);
+
+    /**
+     * @param capacity number of frames tracked at once, rounded up to a power of two.
+     */
+    public LatencyTracker(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity));
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mask = size - 1;
+        shift = 64 - Integer.numberOfTrailingZeros(size);
+        timestamps = new AtomicLongArray(size);
+        marks = new AtomicLongArray(size * MARKS);
+        for (int i = 0; i < histograms.length; ++i) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * A frame entered the listener.
+     */
+    public void onReceived(long timestamp) {
+        final long now = System.nanoTime();
+        final long transit = now - timestamp;
+        long min = minTransit.get();
+        while (transit < min && !minTransit.compareAndSet(min, transit)) {
+            min = minTransit.get();
+        }
+        histograms[Stage.NETWORK.ordinal()].record(transit - Math.min(min, transit));
+        final int slot = slot(timestamp);
+        marks.set(slot * MARKS + RECEIVED, now);
+        marks.set(slot * MARKS + DECODE_START, 0);
+        marks.set(slot * MARKS + DECODE_END, 0);
+        marks.set(slot * MARKS + PRESENTED, 0);
+        // publish the slot once its marks are reset
+        timestamps.set(slot, timestamp);
+    }
+
+    public void onDecodeStarted(long timestamp) {
+        mark(timestamp, DECODE_START, RECEIVED, Stage.QUEUE);
+    }
+
+    public void onDecodeFinished(long timestamp) {
+        mark(timestamp, DECODE_END, DECODE_START, Stage.DECODE);
+    }
+
+    /**
+     * The frame is handed to the display, after reordering and presentation scheduling.
+     */
+    public void onPresented(long timestamp) {
+        mark(timestamp, PRESENTED, DECODE_END, Stage.HANDOFF);
+    }
+
+    /**
+     * The frame is on screen.
+     */
+    public void onDisplayed(long timestamp) {
+        final long now = System.nanoTime();
+        final int slot = slot(timestamp);
+        if (timestamps.get(slot) != timestamp) {
+            return;
+        }
+        final long presented = marks.get(slot * MARKS + PRESENTED);
+        final long received = marks.get(slot * MARKS + RECEIVED);
+        if (presented != 0) {
+            histograms[Stage.DISPLAY.ordinal()].record(now - presented);
+            // only count each frame once
+            marks.set(slot * MARKS + PRESENTED, 0);
+            histograms[Stage.TOTAL.ordinal()].record(now - received);
+        }
+    }
+
+    public LatencyHistogram getHistogram(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+        minTransit.set(Long.MAX_VALUE);
+    }
+
+    /**
+     * Write one line per stage: stage, count, mean, p50, p90, p99 and max in microseconds, after a header line.
+     */
+    public void writeCsv(Appendable out) throws IOException {
+        out.append("stage,count,mean_us,p50_us,p90_us,p99_us,max_us\n");
+        for (Stage stage : Stage.values()) {
+            final LatencyHistogram h = getHistogram(stage);
+            out.append(stage.name().toLowerCase(Locale.ROOT)).append(',')
+                    .append(Long.toString(h.getCount())).append(',')
+                    .append(Long.toString(h.getMeanMicros())).append(',')
+                    .append(Long.toString(h.getPercentileMicros(50))).append(',')
+                    .append(Long.toString(h.getPercentileMicros(90))).append(',')
+                    .append(Long.toString(h.getPercentileMicros(99))).append(',')
+                    .append(Long.toString(h.getMaxMicros())).append('\n');
+        }
+    }
+
+    private void mark(long timestamp, int mark, int previous, Stage stage) {
+        final long now = System.nanoTime();
+        final int slot = slot(timestamp);
+        if (timestamps.get(slot) != timestamp) {
+            return;
+        }
+        final long start = marks.get(slot * MARKS + previous);
+        if (start != 0) {
+            histograms[stage.ordinal()].record(now - start);
+        }
+        marks.set(slot * MARKS + mark, now);
+    }
+
+    private int slot(long timestamp) {
+        return (int) ((timestamp * 0x9E3779B97F4A7C15L) >>> shift) & mask;
+    }
+
+    public enum Stage {
+        /** From the probe to the listener, above the best case. */
+        NETWORK,
+        /** From the listener to the start of the decoding. */
+        QUEUE,
+        DECODE,
+        /** From the end of the decoding to the display, including reordering and presentation scheduling. */
+        HANDOFF,
+        /** From the display request to the frame on screen. */
+        DISPLAY,
+        /** From the listener to the frame on screen. */
+        TOTAL
+    }
+}
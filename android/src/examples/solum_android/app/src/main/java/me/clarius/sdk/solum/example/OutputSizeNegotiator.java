@@ -0,0 +1,75 @@
+package me.clarius.sdk.solum.example;
+
+import android.util.DisplayMetrics;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Follow the size of the views rendering the images, so the probe sends images about the size they are shown at.
+ * <p>
+ * The size is taken from the visible render view on every layout change: rotation, split screen, or switching
+ * between the image view and the surface. A view sized by its content, like an ImageView in wrap_content, is bounded
+ * by the window height instead. On screens denser than MAX_DENSITY the size is capped at MAX_DENSITY pixels per dp,
+ * the extra pixels would cost bandwidth and decoding time without showing more detail.
+ * Must be used on the main thread.
+ */
+
+public class OutputSizeNegotiator {
+    private static final float MAX_DENSITY = 2; // xhdpi
+    private static final int MIN_SIZE = 64;
+
+    private final Listener listener;
+    private final List<View> views = new ArrayList<>();
+    private final View.OnLayoutChangeListener layoutListener =
+            (view, left, top, right, bottom, oldLeft, oldTop, oldRight, oldBottom) -> update();
+    private int width = 0;
+    private int height = 0;
+
+    public OutputSizeNegotiator(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void attach(View view) {
+        views.add(view);
+        view.addOnLayoutChangeListener(layoutListener);
+        update();
+    }
+
+    public void detach() {
+        for (View view : views) {
+            view.removeOnLayoutChangeListener(layoutListener);
+        }
+        views.clear();
+    }
+
+    private void update() {
+        for (View view : views) {
+            if (view.getVisibility() != View.VISIBLE || view.getWidth() == 0) {
+                continue;
+            }
+            final DisplayMetrics metrics = view.getResources().getDisplayMetrics();
+            final float scale = Math.min(1, MAX_DENSITY / metrics.density);
+            final ViewGroup.LayoutParams params = view.getLayoutParams();
+            final boolean wrapsHeight = params != null && params.height == ViewGroup.LayoutParams.WRAP_CONTENT;
+            final int viewHeight = wrapsHeight ? view.getRootView().getHeight() : view.getHeight();
+            final int newWidth = Math.max(MIN_SIZE, Math.round(view.getWidth() * scale));
+            final int newHeight = Math.max(MIN_SIZE, Math.round(viewHeight * scale));
+            if (newWidth != width || newHeight != height) {
+                width = newWidth;
+                height = newHeight;
+                listener.onOutputSize(width, height);
+            }
+            return;
+        }
+    }
+
+    public interface Listener {
+        /**
+         * Called when the size of the visible render view changes, in pixels.
+         */
+        void onOutputSize(int width, int height);
+    }
+}
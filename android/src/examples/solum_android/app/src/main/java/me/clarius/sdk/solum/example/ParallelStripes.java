@@ -0,0 +1,135 @@
+package me.clarius.sdk.solum.example;
+
+/**
+ * Run a task over a range of rows split in stripes, one stripe per thread.
+ * <p>
+ * Worker threads are started once and reused, dispatching a task does not allocate.
+ * The calling thread processes the first stripe and returns when all the stripes are done.
+ * Closing stops the worker threads once the task in progress, if any, is done.
+ */
+
+public class ParallelStripes implements AutoCloseable {
+    private final Thread[] workers;
+    private final int stripeCount;
+    private final Object dispatchLock = new Object();
+    private Task task;
+    private int count;
+    private long generation = 0;
+    private int remaining = 0;
+    private RuntimeException failure;
+    private boolean closed = false;
+
+    /**
+     * @param threads total number of threads including the caller, typically the number of cores.
+     */
+    public ParallelStripes(int threads) {
+        stripeCount = Math.max(1, threads);
+        workers = new Thread[stripeCount - 1];
+        for (int i = 0; i < workers.length; ++i) {
+            final int stripe = i + 1;
+            workers[i] = new Thread(() -> work(stripe), "Stripe-" + stripe);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    public int getStripeCount() {
+        return stripeCount;
+    }
+
+    /**
+     * Run the task over rows [0, count), blocks until done.
+     * Calls from several threads are serialized.
+     */
+    public void run(Task task, int count) {
+        synchronized (dispatchLock) {
+            synchronized (this) {
+                if (closed)
+                    throw new IllegalStateException("closed");
+                this.task = task;
+                this.count = count;
+                this.remaining = stripeCount;
+                this.failure = null;
+                ++generation;
+                notifyAll();
+            }
+            runStripe(0);
+            synchronized (this) {
+                while (remaining > 0) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("interrupted while waiting for stripes", e);
+                    }
+                }
+                this.task = null;
+                if (failure != null) {
+                    throw failure;
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    private void work(int stripe) {
+        long seen = 0;
+        while (true) {
+            synchronized (this) {
+                while (!closed && generation == seen) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (generation == seen) {
+                    // closed, with no task left to help with
+                    return;
+                }
+                seen = generation;
+            }
+            runStripe(stripe);
+        }
+    }
+
+    private void runStripe(int stripe) {
+        final Task current;
+        final int total;
+        synchronized (this) {
+            current = task;
+            total = count;
+        }
+        final int begin = (int) ((long) total * stripe / stripeCount);
+        final int end = (int) ((long) total * (stripe + 1) / stripeCount);
+        RuntimeException error = null;
+        try {
+            if (begin < end) {
+                current.run(begin, end);
+            }
+        } catch (RuntimeException e) {
+            error = e;
+        }
+        synchronized (this) {
+            if (error != null && failure == null) {
+                failure = error;
+            }
+            if (--remaining == 0) {
+                notifyAll();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Task {
+        /**
+         * Process rows [begin, end).
+         */
+        void run(int begin, int end);
+    }
+}
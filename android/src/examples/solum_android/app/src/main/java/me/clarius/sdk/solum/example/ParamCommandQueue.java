@@ -0,0 +1,201 @@
+package me.clarius.sdk.solum.example;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import me.clarius.sdk.Param;
+import me.clarius.sdk.Range;
+import me.clarius.sdk.Solum;
+import me.clarius.sdk.Tgc;
+
+/**
+ * Send parameter changes to the probe at a bounded rate, latest value wins.
+ * <p>
+ * Controls such as sliders can set a parameter on every move: values not sent yet are replaced by newer ones,
+ * so the probe only receives the value the user settled on, and commands are spaced by a minimum interval so
+ * they never saturate the control channel. Values are clamped to the range reported by the probe for the
+ * parameter, and each command is followed by a read back of the value, reported to the listener unless a newer
+ * value is on its way. The time between sending a command and receiving its read back is the round trip latency.
+ */
+
+public class ParamCommandQueue {
+    private final Solum solum;
+    private final ScheduledExecutorService scheduler;
+    private final long minIntervalNanos;
+    private final Listener listener;
+    private final Runnable sendNext = this::sendNext;
+    // in order of first change, so that a parameter changed continuously does not starve the others
+    private final Map<Param, Double> pending = new LinkedHashMap<>();
+    private final Map<Param, Long> sentSequences = new EnumMap<>(Param.class);
+    private final Map<Param, Range> ranges = new EnumMap<>(Param.class);
+    private final Set<Param> rangesRequested = EnumSet.noneOf(Param.class);
+    private final LatencyHistogram roundTrip = new LatencyHistogram();
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private Tgc pendingTgc;
+    private long tgcSequence;
+    private boolean tgcLast = false;
+    private long sequence = 0;
+    private long lastSentNanos;
+    private boolean scheduled = false;
+
+    /**
+     * @param scheduler        sends the commands, a single thread is enough.
+     * @param minIntervalNanos minimum time between two commands.
+     * @param listener         receives the values read back, on the thread calling the Solum callbacks.
+     */
+    public ParamCommandQueue(Solum solum, ScheduledExecutorService scheduler, long minIntervalNanos, Listener listener) {
+        this.solum = solum;
+        this.scheduler = scheduler;
+        this.minIntervalNanos = minIntervalNanos;
+        this.listener = listener;
+        this.lastSentNanos = System.nanoTime() - minIntervalNanos;
+    }
+
+    public synchronized void setParam(Param param, double value) {
+        if (pending.put(param, value) != null) {
+            coalescedCount.incrementAndGet();
+        }
+        if (rangesRequested.add(param)) {
+            solum.getRange(param, result -> result.ifPresent(range -> setRange(param, range)));
+        }
+        scheduleLocked();
+    }
+
+    public synchronized void setTgc(Tgc tgc) {
+        if (pendingTgc != null) {
+            coalescedCount.incrementAndGet();
+        }
+        pendingTgc = tgc;
+        scheduleLocked();
+    }
+
+    /**
+     * Drop the pending commands and the known ranges, for instance after loading another application.
+     */
+    public synchronized void reset() {
+        pending.clear();
+        pendingTgc = null;
+        ranges.clear();
+        rangesRequested.clear();
+        sentSequences.clear();
+    }
+
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    /**
+     * Number of values replaced by a newer one before being sent.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    public LatencyHistogram getRoundTripHistogram() {
+        return roundTrip;
+    }
+
+    private synchronized void setRange(Param param, Range range) {
+        ranges.put(param, range);
+    }
+
+    private void scheduleLocked() {
+        if (scheduled) {
+            return;
+        }
+        scheduled = true;
+        final long delay = Math.max(0, lastSentNanos + minIntervalNanos - System.nanoTime());
+        scheduler.schedule(sendNext, delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void sendNext() {
+        Param param = null;
+        double value = 0;
+        Tgc tgc = null;
+        final long seq;
+        synchronized (this) {
+            scheduled = false;
+            seq = ++sequence;
+            // alternate between the TGC and the parameters when both are pending
+            if (pendingTgc != null && (pending.isEmpty() || !tgcLast)) {
+                tgc = pendingTgc;
+                pendingTgc = null;
+                tgcSequence = seq;
+                tgcLast = true;
+            } else if (!pending.isEmpty()) {
+                final Iterator<Map.Entry<Param, Double>> it = pending.entrySet().iterator();
+                final Map.Entry<Param, Double> next = it.next();
+                it.remove();
+                param = next.getKey();
+                value = clamp(next.getValue(), ranges.get(param));
+                sentSequences.put(param, seq);
+                tgcLast = false;
+            } else {
+                return;
+            }
+        }
+        final long sent = System.nanoTime();
+        if (tgc != null) {
+            final Tgc requested = tgc;
+            solum.setTgc(requested);
+            solum.getTgc(result -> confirmTgc(requested, seq, sent, result));
+        } else {
+            final Param p = param;
+            final double requested = value;
+            solum.setParam(p, requested);
+            solum.getParam(p, result -> confirmParam(p, requested, seq, sent, result));
+        }
+        sentCount.incrementAndGet();
+        synchronized (this) {
+            lastSentNanos = sent;
+            if (pendingTgc != null || !pending.isEmpty()) {
+                scheduleLocked();
+            }
+        }
+    }
+
+    private void confirmParam(Param param, double requested, long seq, long sent, Optional<Double> applied) {
+        roundTrip.record(System.nanoTime() - sent);
+        synchronized (this) {
+            final Long latest = sentSequences.get(param);
+            if (latest == null || latest != seq || pending.containsKey(param)) {
+                // a newer value replaces this one
+                return;
+            }
+        }
+        listener.onParamApplied(param, requested, applied);
+    }
+
+    private void confirmTgc(Tgc requested, long seq, long sent, Optional<Tgc> applied) {
+        roundTrip.record(System.nanoTime() - sent);
+        synchronized (this) {
+            if (tgcSequence != seq || pendingTgc != null) {
+                return;
+            }
+        }
+        listener.onTgcApplied(requested, applied);
+    }
+
+    private static double clamp(double value, Range range) {
+        return range == null ? value : Math.max(range.min, Math.min(range.max, value));
+    }
+
+    public interface Listener {
+        /**
+         * @param requested value sent, after clamping to the range of the parameter.
+         * @param applied   value read back, which the probe may have adjusted.
+         */
+        void onParamApplied(Param param, double requested, Optional<Double> applied);
+
+        void onTgcApplied(Tgc requested, Optional<Tgc> applied);
+    }
+}
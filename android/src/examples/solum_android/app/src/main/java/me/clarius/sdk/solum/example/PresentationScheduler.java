@@ -0,0 +1,207 @@
+package me.clarius.sdk.solum.example;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.view.Choreographer;
+
+import java.util.ArrayDeque;
+
+import me.clarius.sdk.ProcessedImageInfo;
+
+/**
+ * Release decoded frames on vsync, paced by their acquisition timestamps.
+ * <p>
+ * Frames arrive in bursts over Wi-Fi: they are buffered a little and presented when the display time reaches their
+ * acquisition time plus a delay, so the on-screen cadence follows the probe instead of the network.
+ * The transit time (arrival minus acquisition timestamp) of the fastest recent frames is the reference;
+ * the buffering delay tracks how late the other frames arrive compared to it, within the configured latency budget.
+ * <p>
+ * Frames are presented from a dedicated thread, older frames due at the same vsync are dropped and recycled.
+ * Once released, the frames still submitted are recycled right away.
+ * Timestamps are expected in nanoseconds.
+ */
+
+public class PresentationScheduler {
+    private static final int MAX_QUEUED_FRAMES = 8;
+    // how fast the transit reference and the jitter peak forget old frames
+    private static final long REFERENCE_DECAY_NANOS = 50_000;
+    private static final double PEAK_DECAY = 0.98;
+    private static final double JITTER_GAIN = 1.0 / 16;
+
+    private final Presenter presenter;
+    private final BitmapPool bitmapPool;
+    private final HandlerThread thread = new HandlerThread("Presentation", Process.THREAD_PRIORITY_DISPLAY);
+    private final Handler handler;
+    private final ArrayDeque<QueuedFrame> queue = new ArrayDeque<>();
+    private final Choreographer.FrameCallback frameCallback = this::onVsync;
+    private Choreographer choreographer;
+    private boolean callbackPosted = false;
+    private boolean released = false;
+    private long minDelayNanos = 0;
+    private long maxDelayNanos = 100_000_000;
+    private boolean hasReference = false;
+    private long referenceTransit;
+    private long lastTransit;
+    private double jitterPeak = 0;
+    private double jitter = 0;
+    private long bufferingDelay = 0;
+    private long presentedCount = 0;
+    private long droppedCount = 0;
+
+    public PresentationScheduler(Presenter presenter, BitmapPool bitmapPool) {
+        this.presenter = presenter;
+        this.bitmapPool = bitmapPool;
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        handler.post(() -> choreographer = Choreographer.getInstance());
+    }
+
+    /**
+     * Bound the buffering delay, a higher maximum gives a smoother display with more latency.
+     * Setting the same minimum and maximum gives a fixed delay.
+     */
+    public synchronized void setLatencyBudget(long minDelayNanos, long maxDelayNanos) {
+        if (minDelayNanos < 0 || maxDelayNanos < minDelayNanos)
+            throw new IllegalArgumentException("invalid latency budget");
+        this.minDelayNanos = minDelayNanos;
+        this.maxDelayNanos = maxDelayNanos;
+    }
+
+    /**
+     * Queue a frame for presentation, can be called from any thread.
+     * The scheduler takes ownership of the bitmap.
+     */
+    public void submit(Bitmap bitmap, ProcessedImageInfo info) {
+        final long now = System.nanoTime();
+        Bitmap dropped = null;
+        synchronized (this) {
+            if (released) {
+                // the presentation thread is gone, recycle the frame right away
+                dropped = bitmap;
+                ++droppedCount;
+            } else {
+                updateTiming(now - info.tm);
+                queue.addLast(new QueuedFrame(bitmap, info, info.tm + referenceTransit));
+                if (queue.size() > MAX_QUEUED_FRAMES) {
+                    dropped = queue.pollFirst().bitmap;
+                    ++droppedCount;
+                }
+                if (!callbackPosted) {
+                    callbackPosted = true;
+                    handler.post(this::postFrameCallback);
+                }
+            }
+        }
+        if (dropped != null) {
+            bitmapPool.release(dropped);
+        }
+    }
+
+    /**
+     * Mean variation of the transit time between consecutive frames (as defined by RFC 3550).
+     */
+    public synchronized long getJitterNanos() {
+        return (long) jitter;
+    }
+
+    /**
+     * Current delay added to the transit time of the fastest frames before presenting.
+     */
+    public synchronized long getBufferingDelayNanos() {
+        return bufferingDelay;
+    }
+
+    public synchronized long getPresentedCount() {
+        return presentedCount;
+    }
+
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Stop the presentation thread and recycle the pending frames.
+     */
+    public void release() {
+        handler.post(() -> {
+            if (choreographer != null) {
+                choreographer.removeFrameCallback(frameCallback);
+            }
+        });
+        thread.quitSafely();
+        synchronized (this) {
+            released = true;
+            for (QueuedFrame frame : queue) {
+                bitmapPool.release(frame.bitmap);
+            }
+            queue.clear();
+        }
+    }
+
+    private void updateTiming(long transit) {
+        if (!hasReference) {
+            hasReference = true;
+            referenceTransit = transit;
+            lastTransit = transit;
+        }
+        // follow clock drift slowly, snap to faster frames immediately
+        referenceTransit = Math.min(referenceTransit + REFERENCE_DECAY_NANOS, transit);
+        jitter += (Math.abs(transit - lastTransit) - jitter) * JITTER_GAIN;
+        lastTransit = transit;
+        jitterPeak = Math.max(transit - referenceTransit, jitterPeak * PEAK_DECAY);
+        bufferingDelay = Math.max(minDelayNanos, Math.min(maxDelayNanos, (long) jitterPeak));
+    }
+
+    private void postFrameCallback() {
+        choreographer.postFrameCallback(frameCallback);
+    }
+
+    private void onVsync(long frameTimeNanos) {
+        QueuedFrame due = null;
+        int dropped = 0;
+        synchronized (this) {
+            final long deadline = frameTimeNanos - bufferingDelay;
+            while (!queue.isEmpty() && queue.peekFirst().dueTime <= deadline) {
+                if (due != null) {
+                    bitmapPool.release(due.bitmap);
+                    ++dropped;
+                }
+                due = queue.pollFirst();
+            }
+            droppedCount += dropped;
+            if (due != null) {
+                ++presentedCount;
+            }
+            callbackPosted = !queue.isEmpty();
+            if (callbackPosted) {
+                choreographer.postFrameCallback(frameCallback);
+            }
+        }
+        if (due != null) {
+            presenter.present(due.bitmap, due.info);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Presenter {
+        /**
+         * Display a frame, called from the presentation thread, takes ownership of the bitmap.
+         */
+        void present(Bitmap bitmap, ProcessedImageInfo info);
+    }
+
+    private static final class QueuedFrame {
+        final Bitmap bitmap;
+        final ProcessedImageInfo info;
+        // acquisition time converted to the local clock, for the fastest transit
+        final long dueTime;
+
+        QueuedFrame(Bitmap bitmap, ProcessedImageInfo info, long dueTime) {
+            this.bitmap = bitmap;
+            this.info = info;
+            this.dueTime = dueTime;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package me.clarius.sdk.solum.example;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Optional;
+
+import me.clarius.sdk.Connection;
+import me.clarius.sdk.Solum;
+
+/**
+ * Keep the probe connected: connect once both Solum and the Wi-Fi are ready, retry with a backoff when the
+ * connection drops, and save the endpoint of each successful connection.
+ * <p>
+ * Joining the probe Wi-Fi and initializing Solum take about the same time, they are started together and the
+ * connection is attempted as soon as both are done. After an unexpected disconnection or a Wi-Fi loss, the
+ * connection is retried with exponentially growing delays, immediately when the Wi-Fi comes back; the time from
+ * the drop to the new connection is recorded.
+ * All the methods can be called from any thread, the state is only accessed on the main thread.
+ */
+
+public class ProbeReconnector {
+    private static final String TAG = "SolumReconnect";
+    private static final long FIRST_RETRY_DELAY_MS = 250;
+    private static final long MAX_RETRY_DELAY_MS = 4000;
+    private static final int MAX_ATTEMPTS = 30;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Solum solum;
+    private final ConnectionProfiles profiles;
+    private final Runnable retry = this::attempt;
+    private final LatencyHistogram reconnectTimes = new LatencyHistogram();
+    private boolean initialized = false;
+    private boolean waitingForNetwork = false;
+    private boolean wanted = false;
+    private boolean connected = false;
+    private String ipAddress;
+    private int port;
+    private Optional<Long> network = Optional.empty();
+    private String ssid;
+    private String bssid;
+    private int attempts = 0;
+    private long droppedAt = 0;
+
+    public ProbeReconnector(Solum solum, ConnectionProfiles profiles) {
+        this.solum = solum;
+        this.profiles = profiles;
+    }
+
+    public void onInitialized(boolean success) {
+        handler.post(() -> {
+            initialized = success;
+            attempt();
+        });
+    }
+
+    /**
+     * A Wi-Fi join was started, wait for it before connecting.
+     */
+    public void onJoining(String ssid) {
+        handler.post(() -> {
+            this.ssid = ssid;
+            waitingForNetwork = true;
+        });
+    }
+
+    public void onNetworkAvailable(String ssid, long networkHandle) {
+        handler.post(() -> {
+            this.ssid = ssid;
+            network = Optional.of(networkHandle);
+            waitingForNetwork = false;
+            if (wanted && !connected) {
+                // the network is back, no need to wait for the next retry
+                attempts = 0;
+                attempt();
+            }
+        });
+    }
+
+    public void onBssid(String bssid) {
+        handler.post(() -> this.bssid = bssid);
+    }
+
+    public void onNetworkUnavailable() {
+        handler.post(() -> {
+            waitingForNetwork = false;
+            if (wanted && !connected) {
+                // the join failed, try the current network instead of waiting for the user
+                attempt();
+            }
+        });
+    }
+
+    public void onNetworkLost() {
+        handler.post(() -> {
+            // the network request stays registered, Android rejoins when the probe is back in range
+            network = Optional.empty();
+            waitingForNetwork = true;
+            if (connected) {
+                markDropped();
+            }
+        });
+    }
+
+    /**
+     * Connect now, or once Solum and the Wi-Fi are ready, and keep reconnecting until disconnect() is called.
+     *
+     * @param ssid    the probe network SSID, to save the profile, or null if unknown.
+     * @param network the network to use, or empty to use the network of the Wi-Fi join if any.
+     */
+    public void connect(String ssid, String ipAddress, int port, Optional<Long> network) {
+        handler.post(() -> {
+            if (ssid != null) {
+                this.ssid = ssid;
+            }
+            this.ipAddress = ipAddress;
+            this.port = port;
+            if (network.isPresent()) {
+                this.network = network;
+            }
+            wanted = true;
+            attempts = 0;
+            handler.removeCallbacks(retry);
+            attempt();
+        });
+    }
+
+    public void disconnect() {
+        handler.post(() -> {
+            wanted = false;
+            droppedAt = 0;
+            handler.removeCallbacks(retry);
+        });
+    }
+
+    public void onConnectionResult(Connection result) {
+        handler.post(() -> {
+            if (result == Connection.ProbeConnected) {
+                connected = true;
+                attempts = 0;
+                handler.removeCallbacks(retry);
+                if (droppedAt != 0) {
+                    final long elapsed = SystemClock.elapsedRealtimeNanos() - droppedAt;
+                    reconnectTimes.record(elapsed);
+                    Log.i(TAG, "Reconnected in " + elapsed / 1_000_000 + " ms");
+                    droppedAt = 0;
+                }
+                if (ssid != null && ipAddress != null) {
+                    profiles.put(new ConnectionProfiles.Profile(ssid, bssid, ipAddress, port, network, null));
+                }
+            } else if (result == Connection.SwUpdateRequired) {
+                // retrying would fail the same way
+                connected = false;
+                wanted = false;
+            } else {
+                if (connected) {
+                    markDropped();
+                }
+                connected = false;
+                if (wanted) {
+                    scheduleRetry();
+                }
+            }
+        });
+    }
+
+    /**
+     * Time from a connection drop to the next successful connection.
+     */
+    public LatencyHistogram getReconnectTimes() {
+        return reconnectTimes;
+    }
+
+    private void attempt() {
+        if (!wanted || connected || !initialized || waitingForNetwork || ipAddress == null) {
+            return;
+        }
+        Log.d(TAG, "Connecting to " + ipAddress + ":" + port + ", attempt " + (attempts + 1));
+        solum.connect(ipAddress, port, network);
+    }
+
+    private void scheduleRetry() {
+        handler.removeCallbacks(retry);
+        if (attempts >= MAX_ATTEMPTS) {
+            Log.w(TAG, "Giving up after " + attempts + " attempts");
+            wanted = false;
+            return;
+        }
+        final long delay = Math.min(MAX_RETRY_DELAY_MS, FIRST_RETRY_DELAY_MS << Math.min(attempts, 16));
+        ++attempts;
+        handler.postDelayed(retry, delay);
+    }
+
+    private void markDropped() {
+        if (droppedAt == 0) {
+            droppedAt = SystemClock.elapsedRealtimeNanos();
+        }
+    }
+}
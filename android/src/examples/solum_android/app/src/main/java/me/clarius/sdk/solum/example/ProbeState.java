@@ -0,0 +1,68 @@
+package me.clarius.sdk.solum.example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import me.clarius.sdk.Mode;
+import me.clarius.sdk.PointF;
+import me.clarius.sdk.ProbeInfo;
+import me.clarius.sdk.Range;
+import me.clarius.sdk.StatusInfo;
+import me.clarius.sdk.Tgc;
+
+/**
+ * Immutable snapshot of the probe state, see ProbeStateService.
+ * <p>
+ * Each value is empty when the probe did not report it. The region of interest is copied from the points reported
+ * by the SDK, which are mutable.
+ */
+
+public class ProbeState {
+    public final Optional<Double> gain;
+    public final Optional<Double> imageDepth;
+    public final Optional<Mode> mode;
+    public final Optional<Tgc> tgc;
+    public final List<Point> roi;
+    public final Optional<StatusInfo> status;
+    public final Optional<ProbeInfo> probeInfo;
+    public final Optional<Range> dynamicRange;
+    /** When the snapshot was assembled, in System.nanoTime() time base. */
+    public final long timestamp;
+
+    ProbeState(Optional<Double> gain, Optional<Double> imageDepth, Optional<Mode> mode, Optional<Tgc> tgc,
+               PointF[] roi, Optional<StatusInfo> status, Optional<ProbeInfo> probeInfo,
+               Optional<Range> dynamicRange, long timestamp) {
+        this.gain = gain;
+        this.imageDepth = imageDepth;
+        this.mode = mode;
+        this.tgc = tgc;
+        this.roi = copyOf(roi);
+        this.status = status;
+        this.probeInfo = probeInfo;
+        this.dynamicRange = dynamicRange;
+        this.timestamp = timestamp;
+    }
+
+    private static List<Point> copyOf(PointF[] points) {
+        final List<Point> copy = new ArrayList<>(points.length);
+        for (PointF p : points) {
+            copy.add(new Point(p.x, p.y));
+        }
+        return Collections.unmodifiableList(copy);
+    }
+
+    /**
+     * Immutable point of the region of interest outline.
+     */
+    public static final class Point {
+        public final float x;
+        public final float y;
+
+        Point(float x, float y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package me.clarius.sdk.solum.example;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import me.clarius.sdk.Mode;
+import me.clarius.sdk.Param;
+import me.clarius.sdk.PointF;
+import me.clarius.sdk.ProbeInfo;
+import me.clarius.sdk.Range;
+import me.clarius.sdk.Solum;
+import me.clarius.sdk.StatusInfo;
+import me.clarius.sdk.Tgc;
+
+/**
+ * Gather the probe state in one snapshot, fetching only what is not cached.
+ * <p>
+ * Each field is cached with its own time to live: the status (battery, temperature, frame rate) changes on its
+ * own and expires quickly, the imaging parameters only change when set or when the imaging state changes and the
+ * probe information only changes with the probe. Missing fields are requested all at once, and a field already
+ * requested is not requested again, so a snapshot costs at most one round trip and none when everything is
+ * cached. A request without answer after a timeout gives an empty value instead of blocking the snapshot.
+ */
+
+public class ProbeStateService {
+    private static final long REQUEST_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final long FOREVER = Long.MAX_VALUE;
+
+    private final ScheduledExecutorService scheduler;
+    private final Entry<Optional<Double>> gain;
+    private final Entry<Optional<Double>> imageDepth;
+    private final Entry<Optional<Mode>> mode;
+    private final Entry<Optional<Tgc>> tgc;
+    private final Entry<PointF[]> roi;
+    private final Entry<Optional<StatusInfo>> status;
+    private final Entry<Optional<ProbeInfo>> probeInfo;
+    private final Entry<Optional<Range>> dynamicRange;
+    private final Entry<?>[] entries;
+
+    /**
+     * @param roiPoints number of points of the region of interest outline.
+     * @param scheduler times out the requests.
+     */
+    public ProbeStateService(Solum solum, int roiPoints, ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+        gain = new Entry<>(Field.GAIN, Optional.empty(), c -> solum.getParam(Param.Gain, c));
+        imageDepth = new Entry<>(Field.IMAGE_DEPTH, Optional.empty(), c -> solum.getParam(Param.ImageDepth, c));
+        mode = new Entry<>(Field.MODE, Optional.empty(), solum::getMode);
+        tgc = new Entry<>(Field.TGC, Optional.empty(), solum::getTgc);
+        roi = new Entry<>(Field.ROI, new PointF[0], c -> solum.getRoi(roiPoints, c));
+        status = new Entry<>(Field.STATUS, Optional.empty(), solum::getStatus);
+        probeInfo = new Entry<>(Field.PROBE_INFO, Optional.empty(), solum::getProbeInfo);
+        dynamicRange = new Entry<>(Field.DYNAMIC_RANGE, Optional.empty(), c -> solum.getRange(Param.DynamicRange, c));
+        entries = new Entry<?>[]{gain, imageDepth, mode, tgc, roi, status, probeInfo, dynamicRange};
+    }
+
+    /**
+     * Snapshot with every field fresh, completed immediately when all the fields are cached.
+     */
+    public CompletableFuture<ProbeState> snapshot() {
+        final CompletableFuture<Optional<Double>> g = gain.get();
+        final CompletableFuture<Optional<Double>> d = imageDepth.get();
+        final CompletableFuture<Optional<Mode>> m = mode.get();
+        final CompletableFuture<Optional<Tgc>> t = tgc.get();
+        final CompletableFuture<PointF[]> r = roi.get();
+        final CompletableFuture<Optional<StatusInfo>> s = status.get();
+        final CompletableFuture<Optional<ProbeInfo>> p = probeInfo.get();
+        final CompletableFuture<Optional<Range>> dr = dynamicRange.get();
+        return CompletableFuture.allOf(g, d, m, t, r, s, p, dr).thenApply(done -> new ProbeState(g.join(),
+                d.join(), m.join(), t.join(), r.join(), s.join(), p.join(), dr.join(), System.nanoTime()));
+    }
+
+    public void invalidate(Field field) {
+        entries[field.ordinal()].invalidate();
+    }
+
+    /**
+     * Starting, stopping or loading an application may change all the imaging parameters.
+     */
+    public void onImagingChanged() {
+        for (Entry<?> entry : entries) {
+            if (entry.field != Field.PROBE_INFO) {
+                entry.invalidate();
+            }
+        }
+    }
+
+    public void onParamChanged(Param param) {
+        switch (param) {
+            case Gain:
+                gain.invalidate();
+                break;
+            case ImageDepth:
+                // the TGC and region of interest follow the depth
+                imageDepth.invalidate();
+                tgc.invalidate();
+                roi.invalidate();
+                break;
+            case DynamicRange:
+                dynamicRange.invalidate();
+                break;
+            default:
+                break;
+        }
+    }
+
+    public void onTgcChanged() {
+        tgc.invalidate();
+    }
+
+    /**
+     * Forget everything, for instance when connecting to another probe.
+     */
+    public void clear() {
+        for (Entry<?> entry : entries) {
+            entry.invalidate();
+        }
+    }
+
+    public enum Field {
+        GAIN(TimeUnit.SECONDS.toNanos(30)),
+        IMAGE_DEPTH(TimeUnit.SECONDS.toNanos(30)),
+        MODE(TimeUnit.SECONDS.toNanos(30)),
+        TGC(TimeUnit.SECONDS.toNanos(30)),
+        ROI(TimeUnit.SECONDS.toNanos(30)),
+        STATUS(TimeUnit.SECONDS.toNanos(1)),
+        PROBE_INFO(FOREVER),
+        DYNAMIC_RANGE(TimeUnit.SECONDS.toNanos(30));
+
+        // how long a value is reused, FOREVER to keep it until invalidated
+        final long ttlNanos;
+
+        Field(long ttlNanos) {
+            this.ttlNanos = ttlNanos;
+        }
+    }
+
+    private final class Entry<T> {
+        final Field field;
+        final T missing;
+        final Consumer<Consumer<T>> request;
+        private T value;
+        private long fetchedNanos;
+        private boolean valid = false;
+        private long generation = 0;
+        private CompletableFuture<T> inFlight;
+
+        Entry(Field field, T missing, Consumer<Consumer<T>> request) {
+            this.field = field;
+            this.missing = missing;
+            this.request = request;
+        }
+
+        CompletableFuture<T> get() {
+            final CompletableFuture<T> future;
+            final long requested;
+            synchronized (this) {
+                final long ttlNanos = field.ttlNanos;
+                if (valid && (ttlNanos == FOREVER || System.nanoTime() - fetchedNanos < ttlNanos)) {
+                    return CompletableFuture.completedFuture(value);
+                }
+                if (inFlight != null) {
+                    return inFlight;
+                }
+                future = new CompletableFuture<>();
+                inFlight = future;
+                requested = generation;
+            }
+            scheduler.schedule(() -> complete(future, requested, missing, false), REQUEST_TIMEOUT_NANOS,
+                    TimeUnit.NANOSECONDS);
+            request.accept(result -> complete(future, requested, result, true));
+            return future;
+        }
+
+        synchronized void invalidate() {
+            valid = false;
+            ++generation;
+            // the answer to a pending request may predate the change, the next snapshot asks again
+            inFlight = null;
+        }
+
+        private void complete(CompletableFuture<T> future, long requested, T result, boolean answered) {
+            synchronized (this) {
+                if (inFlight == future) {
+                    inFlight = null;
+                }
+                // an answer requested before an invalidation is already stale, do not cache it
+                if (answered && requested == generation && !future.isDone()) {
+                    value = result;
+                    fetchedNanos = System.nanoTime();
+                    valid = true;
+                }
+            }
+            future.complete(result);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package me.clarius.sdk.solum.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import me.clarius.sdk.Solum;
+
+/**
+ * Download the raw data buffered by the probe into a file.
+ * <p>
+ * The probe transfer is reported with the progress given by Solum, then the data is written in chunks through a
+ * file channel, reporting the bytes written. The buffer received from Solum is only valid during the callback, so
+ * it is written from the callback: this holds the Solum callback thread for the time of the write, which is
+ * acceptable as the probe is frozen while downloading, whereas copying it to write it later would double the
+ * memory used by a capture of hundreds of megabytes. The data is never copied.
+ * Solum delivers the whole capture at once and its transfer cannot be interrupted: cancelling during the transfer
+ * discards the data when it arrives, cancelling while writing stops after the current chunk.
+ * The data goes into a temporary file renamed once complete, so the destination is never left truncated.
+ */
+
+public class RawDataDownload {
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private final Solum solum;
+    private final File destination;
+    private final Listener listener;
+    private volatile boolean cancelled = false;
+
+    /**
+     * @param destination file receiving the raw data package.
+     */
+    public RawDataDownload(Solum solum, File destination, Listener listener) {
+        this.solum = solum;
+        this.destination = destination;
+        this.listener = listener;
+    }
+
+    /**
+     * Download all the buffered data.
+     */
+    public void start() {
+        start(0, 0);
+    }
+
+    /**
+     * Download the data buffered between two timestamps, both 0 to download everything.
+     */
+    public void start(long startTimestamp, long endTimestamp) {
+        solum.requestRawData(startTimestamp, endTimestamp, this::requested);
+    }
+
+    /**
+     * Stop the download, the listener receives onCancelled() once stopped.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public File getDestination() {
+        return destination;
+    }
+
+    private void requested(int result) {
+        if (cancelled) {
+            listener.onCancelled();
+        } else if (result < 0) {
+            listener.onError("Failed to request raw data (ensure buffering is enabled and probe is frozen)");
+        } else if (result == 0) {
+            listener.onError("No raw data available");
+        } else {
+            solum.readRawData(this::retrieved, (progress, total) -> {
+                if (!cancelled) {
+                    listener.onTransferProgress(progress, total);
+                }
+            });
+        }
+    }
+
+    private void retrieved(int result, ByteBuffer data) {
+        if (cancelled) {
+            listener.onCancelled();
+        } else if (result < 0) {
+            listener.onError("Failed to read raw data (ensure buffering is enabled and probe is frozen)");
+        } else if (result == 0 || data == null) {
+            listener.onError("No raw data available");
+        } else {
+            // the buffer is only valid during the callback
+            write(data);
+        }
+    }
+
+    private void write(ByteBuffer data) {
+        final File partial = new File(destination.getPath() + ".part");
+        final ByteBuffer chunk = data.duplicate();
+        final long total = chunk.remaining();
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(partial.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final int end = chunk.limit();
+            while (chunk.position() < end) {
+                if (cancelled) {
+                    break;
+                }
+                chunk.limit(Math.min(end, chunk.position() + CHUNK_SIZE));
+                while (chunk.hasRemaining()) {
+                    written += channel.write(chunk);
+                }
+                listener.onWriteProgress(written, total);
+            }
+            if (!cancelled) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            partial.delete();
+            listener.onError("Failed to write raw data: " + e);
+            return;
+        }
+        if (cancelled) {
+            partial.delete();
+            listener.onCancelled();
+        } else if (!partial.renameTo(destination)) {
+            partial.delete();
+            listener.onError("Failed to write raw data to " + destination);
+        } else {
+            listener.onComplete(destination, written);
+        }
+    }
+
+    public interface Listener {
+        /**
+         * Transfer from the probe, in the units reported by Solum.
+         */
+        void onTransferProgress(int progress, int total);
+
+        /**
+         * Bytes written to the file.
+         */
+        void onWriteProgress(long written, long total);
+
+        void onComplete(File file, long size);
+
+        void onCancelled();
+
+        void onError(String message);
+    }
+}
@@ -0,0 +1,149 @@
+package me.clarius.sdk.solum.example;
+
+import android.graphics.Bitmap;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import me.clarius.sdk.ProbeInfo;
+import me.clarius.sdk.RawImageInfo;
+
+/**
+ * Scan convert raw envelope frames in separate thread to avoid blocking Solum
+ * <p>
+ * Only the newest pending frame is kept, frames arriving while a conversion is running replace the pending one.
+ * The probe radius is needed to convert images from curved arrays, linear geometry is assumed until it is known.
+ * RF frames (RF mode with RF streaming enabled) go through envelope detection and log compression first.
+ * Envelope data must be 8-bit uncompressed, JPEG compressed frames are ignored.
+ */
+
+public class RawImageConverter {
+    private static final int MAX_CACHED_TABLES = 4;
+    private static final int INITIAL_FRAME_CAPACITY = 512 * 1024;
+
+    private final Executor executor;
+    private final BitmapPool bitmapPool;
+    private final Callback callback;
+    private final ScanConverter scanConverter;
+    private final RfProcessor rfProcessor;
+    private final FrameBufferPool framePool = new FrameBufferPool(3, INITIAL_FRAME_CAPACITY);
+    private final AtomicReference<PendingFrame> pendingFrame = new AtomicReference<>();
+    private volatile ProbeInfo probeInfo;
+    private volatile int outputWidth = 640;
+    private volatile int outputHeight = 480;
+    // only used from the executor thread
+    private ScanConverter.Geometry geometry;
+    private byte[] envelope = new byte[0];
+    private int[] pixels = new int[0];
+
+    RawImageConverter(Executor executor, ParallelStripes stripes, BitmapPool bitmapPool, Callback callback) {
+        this.executor = executor;
+        this.bitmapPool = bitmapPool;
+        this.callback = callback;
+        this.scanConverter = new ScanConverter(stripes, MAX_CACHED_TABLES);
+        this.rfProcessor = new RfProcessor(stripes);
+    }
+
+    public RfProcessor getRfProcessor() {
+        return rfProcessor;
+    }
+
+    public void setProbeInfo(ProbeInfo probeInfo) {
+        this.probeInfo = probeInfo;
+    }
+
+    public void setOutputSize(int width, int height) {
+        outputWidth = width;
+        outputHeight = height;
+    }
+
+    /**
+     * Queue a frame for conversion, the buffer is copied before returning and can be reused by the caller.
+     */
+    public void convertImage(ByteBuffer buffer, RawImageInfo info) {
+        if (info.jpeg != 0 || (!info.rf && info.bitsPerSample != 8)) {
+            return;
+        }
+        ByteBuffer frame = framePool.copyOf(buffer, info.lines * info.samples * (info.bitsPerSample / 8));
+        if (frame == null) {
+            return;
+        }
+        PendingFrame stale = pendingFrame.getAndSet(new PendingFrame(frame, info));
+        if (stale != null) {
+            framePool.release(stale.buffer);
+        } else {
+            executor.execute(this::convertPending);
+        }
+    }
+
+    private void convertPending() {
+        PendingFrame frame = pendingFrame.getAndSet(null);
+        if (frame == null) {
+            return;
+        }
+        try {
+            Bitmap bitmap = doConvert(frame.buffer, frame.info);
+            callback.onResult(bitmap, frame.info);
+        } catch (Exception e) {
+            callback.onError(e);
+        } finally {
+            framePool.release(frame.buffer);
+        }
+    }
+
+    private Bitmap doConvert(ByteBuffer frame, RawImageInfo info) {
+        updateGeometry(info);
+        final int size = info.lines * info.samples;
+        if (envelope.length < size) {
+            envelope = new byte[size];
+        }
+        if (info.rf) {
+            rfProcessor.process(frame, info.lines, info.samples, info.bitsPerSample, envelope);
+        } else {
+            frame.get(envelope, 0, size);
+        }
+        final int width = geometry.getWidth();
+        final int height = geometry.getHeight();
+        if (pixels.length < width * height) {
+            pixels = new int[width * height];
+        }
+        scanConverter.convert(geometry, envelope, pixels);
+        Bitmap bitmap = bitmapPool.acquire(width, height, Bitmap.Config.ARGB_8888);
+        bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+        return bitmap;
+    }
+
+    private void updateGeometry(RawImageInfo info) {
+        ProbeInfo probe = probeInfo;
+        final double radius = probe != null ? probe.radius * 1000.0 : 0;
+        // the lateral size is the line spacing on the probe surface, fall back to the element pitch
+        final double lateral = info.lateralSize > 0 || probe == null ? info.lateralSize : probe.pitch;
+        if (geometry == null || geometry.lines != info.lines || geometry.samples != info.samples
+                || geometry.axialMicrons != info.axialSize || geometry.lateralMicrons != lateral
+                || geometry.radiusMicrons != radius
+                || geometry.width != outputWidth || geometry.height != outputHeight) {
+            geometry = new ScanConverter.Geometry(info.lines, info.samples,
+                    info.axialSize, lateral, radius, outputWidth, outputHeight);
+        }
+    }
+
+    interface Callback {
+        /**
+         * Receive a converted image, the bitmap comes from the pool and should be released once not needed anymore.
+         */
+        void onResult(Bitmap bitmap, RawImageInfo info);
+
+        void onError(Exception e);
+    }
+
+    private static final class PendingFrame {
+        final ByteBuffer buffer;
+        final RawImageInfo info;
+
+        PendingFrame(ByteBuffer buffer, RawImageInfo info) {
+            this.buffer = buffer;
+            this.info = info;
+        }
+    }
+}
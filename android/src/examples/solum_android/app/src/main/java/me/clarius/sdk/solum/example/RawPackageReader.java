@@ -0,0 +1,303 @@
+package me.clarius.sdk.solum.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Random access to a raw data package downloaded from the probe.
+ * <p>
+ * The package is a tar archive (uncompressed, extract gzipped packages first). Opening it only reads the tar
+ * headers; the .raw files are data streams made of a header (id, frames, lines, samples, sample size as
+ * little endian 32-bit integers) followed by fixed-size frames, each a 64-bit timestamp followed by the lines of
+ * samples. IQ streams hold an I and a Q value per sample.
+ * <p>
+ * Since frames have a fixed size, a frame is located in O(1) and by timestamp with a binary search; the file is
+ * mapped in windows of whole frames on first access, so reading a frame of a multi-gigabyte package neither
+ * reads nor copies the rest of the package.
+ */
+
+public class RawPackageReader implements AutoCloseable {
+    private static final int BLOCK = 512;
+    private static final int STREAM_HEADER_SIZE = 20;
+    private static final int TIMESTAMP_SIZE = 8;
+    private static final long WINDOW_SIZE = 256L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final List<Stream> streams = new ArrayList<>();
+
+    public RawPackageReader(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            readEntries();
+            for (Entry entry : entries.values()) {
+                if (entry.name.endsWith(".raw") && entry.size >= STREAM_HEADER_SIZE) {
+                    streams.add(new Stream(entry));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Names of the files in the package.
+     */
+    public List<String> getEntryNames() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    /**
+     * Content of a file of the package (for instance a configuration file), or null if missing.
+     */
+    public ByteBuffer readEntry(String name) throws IOException {
+        final Entry entry = entries.get(name);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.size > Integer.MAX_VALUE)
+            throw new IOException(name + " too large to be mapped at once");
+        return channel.map(FileChannel.MapMode.READ_ONLY, entry.offset, entry.size);
+    }
+
+    public List<Stream> getStreams() {
+        return Collections.unmodifiableList(streams);
+    }
+
+    /**
+     * First stream of a type, or null.
+     */
+    public Stream getStream(StreamType type) {
+        for (Stream stream : streams) {
+            if (stream.type == type) {
+                return stream;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void readEntries() throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(BLOCK);
+        channel.read(header, 0);
+        if (header.position() >= 2 && (header.get(0) & 0xff) == 0x1f && (header.get(1) & 0xff) == 0x8b)
+            throw new IOException("compressed raw data package, extract it first");
+        long position = 0;
+        String longName = null;
+        while (position + BLOCK <= channel.size()) {
+            header.clear();
+            while (header.hasRemaining()) {
+                if (channel.read(header, position + header.position()) < 0)
+                    throw new IOException("truncated tar header");
+            }
+            if (header.get(0) == 0) {
+                // end of archive
+                break;
+            }
+            final long size = parseSize(header);
+            final byte type = header.get(156);
+            final long data = position + BLOCK;
+            if (type == 'L') {
+                // GNU long name: the name of the next entry is the data of this one
+                final ByteBuffer name = ByteBuffer.allocate((int) size);
+                channel.read(name, data);
+                longName = cString(name.array(), 0, (int) size);
+            } else {
+                String name = longName != null ? longName : entryName(header);
+                longName = null;
+                if (type == '0' || type == 0) {
+                    final int slash = name.lastIndexOf('/');
+                    name = slash >= 0 ? name.substring(slash + 1) : name;
+                    entries.put(name, new Entry(name, data, size));
+                }
+            }
+            position = data + (size + BLOCK - 1) / BLOCK * BLOCK;
+        }
+    }
+
+    private static String entryName(ByteBuffer header) {
+        final byte[] bytes = header.array();
+        final String name = cString(bytes, 0, 100);
+        final boolean ustar = bytes[257] == 'u' && bytes[258] == 's' && bytes[259] == 't'
+                && bytes[260] == 'a' && bytes[261] == 'r';
+        final String prefix = ustar ? cString(bytes, 345, 155) : "";
+        return prefix.isEmpty() ? name : prefix + "/" + name;
+    }
+
+    private static long parseSize(ByteBuffer header) throws IOException {
+        final byte[] bytes = header.array();
+        if ((bytes[124] & 0x80) != 0) {
+            // base-256 encoding for large files
+            long size = bytes[124] & 0x7f;
+            for (int i = 125; i < 136; ++i) {
+                size = (size << 8) | (bytes[i] & 0xff);
+            }
+            return size;
+        }
+        long size = 0;
+        for (int i = 124; i < 136; ++i) {
+            final byte b = bytes[i];
+            if (b == 0 || b == ' ') {
+                if (size != 0) break;
+                continue;
+            }
+            if (b < '0' || b > '7')
+                throw new IOException("invalid tar entry size");
+            size = (size << 3) + (b - '0');
+        }
+        return size;
+    }
+
+    private static String cString(byte[] bytes, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && bytes[end] != 0) {
+            ++end;
+        }
+        return new String(bytes, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    public enum StreamType {
+        ENVELOPE,
+        RF,
+        IQ,
+        OTHER;
+
+        static StreamType fromName(String name) {
+            if (name.endsWith("_env.raw")) return ENVELOPE;
+            if (name.endsWith("_rf.raw")) return RF;
+            if (name.endsWith("_iq.raw")) return IQ;
+            return OTHER;
+        }
+    }
+
+    private static final class Entry {
+        final String name;
+        final long offset;
+        final long size;
+
+        Entry(String name, long offset, long size) {
+            this.name = name;
+            this.offset = offset;
+            this.size = size;
+        }
+    }
+
+    /**
+     * One .raw file of the package.
+     */
+    public final class Stream {
+        public final String name;
+        public final StreamType type;
+        public final int id;
+        public final int frames;
+        public final int lines;
+        public final int samples;
+        public final int sampleSize;
+        private final long dataOffset;
+        private final long frameStride;
+        private final int framesPerWindow;
+        private final MappedByteBuffer[] windows;
+
+        Stream(Entry entry) throws IOException {
+            final ByteBuffer header = ByteBuffer.allocate(STREAM_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(header, entry.offset);
+            name = entry.name;
+            type = StreamType.fromName(name);
+            id = header.getInt(0);
+            lines = header.getInt(8);
+            samples = header.getInt(12);
+            sampleSize = header.getInt(16);
+            if (lines < 0 || samples < 0 || sampleSize < 0)
+                throw new IOException("invalid stream header in " + name);
+            dataOffset = entry.offset + STREAM_HEADER_SIZE;
+            frameStride = TIMESTAMP_SIZE + getFrameSize();
+            if (frameStride > Integer.MAX_VALUE)
+                throw new IOException("frames too large in " + name);
+            // trust the data actually present over the frame count of the header
+            final long available = (entry.size - STREAM_HEADER_SIZE) / frameStride;
+            frames = (int) Math.min(header.getInt(4), available);
+            framesPerWindow = (int) Math.max(1, WINDOW_SIZE / frameStride);
+            windows = new MappedByteBuffer[frames == 0 ? 0 : (frames - 1) / framesPerWindow + 1];
+        }
+
+        /**
+         * Size of a frame data in bytes, without its timestamp.
+         */
+        public long getFrameSize() {
+            return (long) lines * samples * sampleSize * (type == StreamType.IQ ? 2 : 1);
+        }
+
+        public long getTimestamp(int frame) throws IOException {
+            final ByteBuffer window = window(frame);
+            return window.getLong(offsetInWindow(frame));
+        }
+
+        /**
+         * Number of the last frame at or before a timestamp, 0 if the timestamp is before the first frame,
+         * -1 if the stream is empty.
+         */
+        public int frameAt(long timestamp) throws IOException {
+            if (frames == 0) {
+                return -1;
+            }
+            int low = 0;
+            int high = frames - 1;
+            while (low < high) {
+                final int mid = (low + high + 1) >>> 1;
+                if (getTimestamp(mid) <= timestamp) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Data of a frame without copying it, little endian, one line after the other.
+         */
+        public ByteBuffer readFrame(int frame) throws IOException {
+            final ByteBuffer data = window(frame).duplicate();
+            final int offset = offsetInWindow(frame) + TIMESTAMP_SIZE;
+            data.position(offset);
+            data.limit(offset + (int) getFrameSize());
+            return data.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private int offsetInWindow(int frame) {
+            return (int) ((frame % framesPerWindow) * frameStride);
+        }
+
+        private synchronized ByteBuffer window(int frame) throws IOException {
+            if (frame < 0 || frame >= frames)
+                throw new IndexOutOfBoundsException("frame " + frame + " out of " + frames);
+            final int number = frame / framesPerWindow;
+            MappedByteBuffer window = windows[number];
+            if (window == null) {
+                final int first = number * framesPerWindow;
+                final int count = Math.min(framesPerWindow, frames - first);
+                window = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + first * frameStride,
+                        count * frameStride);
+                window.order(ByteOrder.LITTLE_ENDIAN);
+                windows[number] = window;
+            }
+            return window;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package me.clarius.sdk.solum.example;
+
+import java.io.IOException;
+
+import me.clarius.sdk.ImageFormat;
+
+/**
+ * Convert the SDK image formats to the codes stored in recordings and back.
+ * <p>
+ * The codes are explicit, see FrameRecorder.FORMAT_*, so reordering the SDK enum does not change the meaning of
+ * existing recordings.
+ */
+
+public final class RecordingFormats {
+    private RecordingFormats() {
+    }
+
+    public static int toCode(ImageFormat format) {
+        switch (format) {
+            case Uncompressed:
+                return FrameRecorder.FORMAT_UNCOMPRESSED;
+            case Jpeg:
+                return FrameRecorder.FORMAT_JPEG;
+            case Png:
+                return FrameRecorder.FORMAT_PNG;
+            default:
+                throw new IllegalArgumentException("unsupported image format: " + format);
+        }
+    }
+
+    /**
+     * @throws IOException if the code is unknown, the recording is then corrupt or from a newer version.
+     */
+    public static ImageFormat fromCode(int code) throws IOException {
+        switch (code) {
+            case FrameRecorder.FORMAT_UNCOMPRESSED:
+                return ImageFormat.Uncompressed;
+            case FrameRecorder.FORMAT_JPEG:
+                return ImageFormat.Jpeg;
+            case FrameRecorder.FORMAT_PNG:
+                return ImageFormat.Png;
+            default:
+                throw new IOException("unknown recorded image format: " + code);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package me.clarius.sdk.solum.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read a recording written by FrameRecorder.
+ * <p>
+ * The index and the segments are mapped in memory, segments only when first accessed: locating a frame by number
+ * is O(1), by timestamp a binary search over the index, and reading a frame does not copy its data.
+ * The frames visible are the ones indexed when the reader was opened.
+ */
+
+public class RecordingReader implements AutoCloseable {
+    private final File directory;
+    private final MappedByteBuffer index;
+    private final long segmentSize;
+    private final int frameCount;
+    private final MappedByteBuffer[] segments;
+
+    public RecordingReader(File directory) throws IOException {
+        this.directory = directory;
+        try (FileChannel channel = new RandomAccessFile(new File(directory, FrameRecorder.INDEX_FILE), "r").getChannel()) {
+            final long size = channel.size();
+            if (size < FrameRecorder.INDEX_HEADER_SIZE)
+                throw new IOException("truncated recording index");
+            index = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        if (index.getInt(0) != FrameRecorder.INDEX_MAGIC)
+            throw new IOException("not a recording index");
+        if (index.getInt(4) != FrameRecorder.VERSION)
+            throw new IOException("unsupported recording version: " + index.getInt(4));
+        segmentSize = index.getLong(8);
+        // ignore a partially written entry
+        frameCount = (index.capacity() - FrameRecorder.INDEX_HEADER_SIZE) / FrameRecorder.INDEX_ENTRY_SIZE;
+        final int segmentCount = frameCount == 0 ? 0 : (int) (position(frameCount - 1) / segmentSize) + 1;
+        segments = new MappedByteBuffer[segmentCount];
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    public long getTimestamp(int frame) {
+        return index.getLong(entry(frame));
+    }
+
+    /**
+     * Number of the last frame at or before a timestamp, 0 if the timestamp is before the first frame,
+     * -1 if the recording is empty.
+     */
+    public int frameAt(long timestamp) {
+        if (frameCount == 0) {
+            return -1;
+        }
+        int low = 0;
+        int high = frameCount - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (getTimestamp(mid) <= timestamp) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Read a frame, its data is a read-only view valid as long as the reader is open.
+     */
+    public synchronized Frame read(int frame) throws IOException {
+        final long position = position(frame);
+        final int number = (int) (position / segmentSize);
+        final int offset = (int) (position % segmentSize);
+        final ByteBuffer segment = segment(number);
+        final FrameRecorder.Header header = FrameRecorder.Header.read(segment, offset);
+        final ByteBuffer data = segment.duplicate();
+        data.position(offset + FrameRecorder.FRAME_HEADER_SIZE);
+        data.limit(offset + FrameRecorder.FRAME_HEADER_SIZE + header.length);
+        return new Frame(header, data.slice());
+    }
+
+    /**
+     * Pass the frames between two timestamps (included) to the consumer, in recording order.
+     */
+    public void replay(long fromTimestamp, long toTimestamp, FrameConsumer consumer) throws IOException {
+        for (int i = Math.max(0, frameAt(fromTimestamp)); i < frameCount; ++i) {
+            final long timestamp = getTimestamp(i);
+            if (timestamp > toTimestamp) {
+                break;
+            }
+            if (timestamp >= fromTimestamp) {
+                consumer.accept(read(i));
+            }
+        }
+    }
+
+    /**
+     * Release the mappings, they are unmapped once garbage collected.
+     */
+    @Override
+    public synchronized void close() {
+        for (int i = 0; i < segments.length; ++i) {
+            segments[i] = null;
+        }
+    }
+
+    private int entry(int frame) {
+        if (frame < 0 || frame >= frameCount)
+            throw new IndexOutOfBoundsException("frame " + frame + " out of " + frameCount);
+        return FrameRecorder.INDEX_HEADER_SIZE + frame * FrameRecorder.INDEX_ENTRY_SIZE;
+    }
+
+    private long position(int frame) {
+        return index.getLong(entry(frame) + 8);
+    }
+
+    private ByteBuffer segment(int number) throws IOException {
+        MappedByteBuffer segment = segments[number];
+        if (segment == null) {
+            try (FileChannel channel = new RandomAccessFile(new File(directory, FrameRecorder.segmentName(number)), "r").getChannel()) {
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            segments[number] = segment;
+        }
+        return segment;
+    }
+
+    public interface FrameConsumer {
+        void accept(Frame frame) throws IOException;
+    }
+
+    public static final class Frame {
+        public final FrameRecorder.Header header;
+        public final ByteBuffer data;
+
+        Frame(FrameRecorder.Header header, ByteBuffer data) {
+            this.header = header;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package me.clarius.sdk.solum.example;
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+/**
+ * Restore the submission order of results computed in parallel.
+ * <p>
+ * Each item is registered with submit() in timestamp order, then completed from any thread with complete().
+ * Results are passed to the sink strictly in increasing timestamp order.
+ * At most window items can be pending: when the window is full, results waiting behind the oldest pending item
+ * are released and the oldest item is dropped when it completes (late), or the new item is refused if nothing
+ * is waiting.
+ * <p>
+ * The sink is called without holding the buffer lock, so a slow sink does not block submit() or complete().
+ * In-order results are queued under the lock, then passed to the sink by one thread at a time: the first thread
+ * finding nobody delivering delivers everything queued, including what other threads queue meanwhile.
+ */
+
+public class ReorderBuffer<T> {
+    private final int window;
+    private final Consumer<T> sink;
+    private final Consumer<T> dropped;
+    private final long[] timestamps;
+    private final Object[] results;
+    private final boolean[] done;
+    private long head = 0;
+    private long tail = 0;
+    private long lastTimestamp = Long.MIN_VALUE;
+    // results in order, waiting for the sink
+    private final ArrayDeque<T> ready = new ArrayDeque<>();
+    private boolean delivering = false;
+
+    /**
+     * @param window  maximum number of pending items.
+     * @param sink    receives the results in order.
+     * @param dropped receives the results that arrived too late, for example to recycle them.
+     */
+    public ReorderBuffer(int window, Consumer<T> sink, Consumer<T> dropped) {
+        if (window < 1)
+            throw new IllegalArgumentException("window must be positive");
+        this.window = window;
+        this.sink = sink;
+        this.dropped = dropped;
+        this.timestamps = new long[window];
+        this.results = new Object[window];
+        this.done = new boolean[window];
+    }
+
+    /**
+     * Register a new item.
+     *
+     * @return the sequence number to pass to complete(), or -1 if the window is full.
+     */
+    public long submit(long timestamp) {
+        final long sequence;
+        final boolean deliver;
+        synchronized (this) {
+            if (tail - head == window) {
+                if (!hasWaitingResult()) {
+                    return -1;
+                }
+                // give up on the oldest item, it will be dropped when it completes
+                ++head;
+                drain();
+            }
+            final int slot = slot(tail);
+            timestamps[slot] = timestamp;
+            results[slot] = null;
+            done[slot] = false;
+            sequence = tail++;
+            deliver = claimDelivery();
+        }
+        if (deliver) {
+            deliver();
+        }
+        return sequence;
+    }
+
+    /**
+     * Complete an item, the result may be null if it failed.
+     */
+    public void complete(long sequence, T result) {
+        final boolean late;
+        final boolean deliver;
+        synchronized (this) {
+            late = sequence < head;
+            if (!late) {
+                final int slot = slot(sequence);
+                results[slot] = result;
+                done[slot] = true;
+                drain();
+            }
+            deliver = claimDelivery();
+        }
+        if (late) {
+            drop(result);
+        }
+        if (deliver) {
+            deliver();
+        }
+    }
+
+    /**
+     * Number of items submitted but not passed to the sink yet.
+     */
+    public synchronized int getPendingCount() {
+        return (int) (tail - head + ready.size());
+    }
+
+    // Become the delivering thread if there is something to deliver and nobody else is delivering.
+    private boolean claimDelivery() {
+        if (delivering || ready.isEmpty()) {
+            return false;
+        }
+        delivering = true;
+        return true;
+    }
+
+    // Pass the queued results to the sink until the queue is empty, then give up the delivering role.
+    private void deliver() {
+        while (true) {
+            final T result;
+            synchronized (this) {
+                result = ready.poll();
+                if (result == null) {
+                    delivering = false;
+                    return;
+                }
+            }
+            try {
+                sink.accept(result);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    delivering = false;
+                }
+                throw e;
+            }
+        }
+    }
+
+    private boolean hasWaitingResult() {
+        for (long i = head; i < tail; ++i) {
+            if (done[slot(i)]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void drain() {
+        while (head < tail && done[slot(head)]) {
+            final int slot = slot(head);
+            T result = (T) results[slot];
+            results[slot] = null;
+            done[slot] = false;
+            ++head;
+            if (result == null) {
+                continue;
+            }
+            if (timestamps[slot] > lastTimestamp) {
+                lastTimestamp = timestamps[slot];
+                ready.addLast(result);
+            } else {
+                drop(result);
+            }
+        }
+    }
+
+    private void drop(T result) {
+        if (result != null) {
+            dropped.accept(result);
+        }
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % window);
+    }
+}
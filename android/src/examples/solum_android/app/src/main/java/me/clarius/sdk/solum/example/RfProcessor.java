@@ -0,0 +1,245 @@
+package me.clarius.sdk.solum.example;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Turn RF lines into log compressed envelope data (B-mode before scan conversion).
+ * <p>
+ * Each line is unpacked from its signed samples, its envelope is the magnitude of the analytic signal computed
+ * with an FFT based Hilbert transform, then it is log compressed to 8 bits over the configured dynamic range,
+ * relative to the full scale of the samples.
+ * <p>
+ * FFT plans are cached by size, work buffers are kept per thread, and lines are processed in parallel:
+ * once warmed up, processing a frame does not allocate.
+ */
+
+public class RfProcessor {
+    private final ParallelStripes stripes;
+    private final Map<Integer, FftPlan> plans = new HashMap<>();
+    private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+    private final LineTask task = new LineTask();
+    private FftPlan lastPlan;
+    private volatile double dynamicRangeDb = 60;
+
+    public RfProcessor(ParallelStripes stripes) {
+        this.stripes = stripes;
+    }
+
+    /**
+     * Range in dB mapped to the output gray levels, below full scale.
+     */
+    public void setDynamicRange(double decibels) {
+        if (decibels <= 0)
+            throw new IllegalArgumentException("dynamic range must be positive");
+        dynamicRangeDb = decibels;
+    }
+
+    public double getDynamicRange() {
+        return dynamicRangeDb;
+    }
+
+    /**
+     * Process one RF frame.
+     *
+     * @param rf            lines * samples signed little endian samples, one line after the other,
+     *                      read from the buffer position which is left unchanged.
+     * @param lines         number of lines.
+     * @param samples       number of samples per line.
+     * @param bitsPerSample 8, 16 or 32.
+     * @param envelope      output, lines * samples gray levels.
+     */
+    public synchronized void process(ByteBuffer rf, int lines, int samples, int bitsPerSample, byte[] envelope) {
+        if (bitsPerSample != 8 && bitsPerSample != 16 && bitsPerSample != 32)
+            throw new IllegalArgumentException("unsupported bits per sample: " + bitsPerSample);
+        if (rf.remaining() < lines * samples * (bitsPerSample / 8))
+            throw new IllegalArgumentException("RF data too small");
+        if (envelope.length < lines * samples)
+            throw new IllegalArgumentException("envelope too small");
+        task.plan = getPlan(samples);
+        task.rf = rf.order(ByteOrder.LITTLE_ENDIAN);
+        task.offset = rf.position();
+        task.samples = samples;
+        task.bytesPerSample = bitsPerSample / 8;
+        task.envelope = envelope;
+        // magnitudes are scaled by the FFT size, and the analytic signal amplitude matches the input
+        final double fullScale = Math.pow(2, bitsPerSample - 1) * task.plan.size;
+        task.logOffset = -20 * Math.log10(fullScale);
+        task.levelsPerDb = 255 / dynamicRangeDb;
+        task.dynamicRange = dynamicRangeDb;
+        try {
+            stripes.run(task, lines);
+        } finally {
+            task.rf = null;
+            task.envelope = null;
+        }
+    }
+
+    private FftPlan getPlan(int samples) {
+        int size = Integer.highestOneBit(samples);
+        if (size < samples) {
+            size <<= 1;
+        }
+        if (lastPlan != null && lastPlan.size == size) {
+            return lastPlan;
+        }
+        FftPlan plan = plans.get(size);
+        if (plan == null) {
+            plan = new FftPlan(size);
+            plans.put(size, plan);
+        }
+        lastPlan = plan;
+        return plan;
+    }
+
+    // Reused for every frame to avoid allocating a task.
+    private final class LineTask implements ParallelStripes.Task {
+        FftPlan plan;
+        ByteBuffer rf;
+        int offset;
+        int samples;
+        int bytesPerSample;
+        byte[] envelope;
+        double logOffset;
+        double levelsPerDb;
+        double dynamicRange;
+
+        @Override
+        public void run(int begin, int end) {
+            final Scratch work = scratch.get();
+            work.ensure(plan.size);
+            final float[] re = work.re;
+            final float[] im = work.im;
+            for (int line = begin; line < end; ++line) {
+                unpack(line, re, im);
+                plan.transform(re, im);
+                analytic(re, im);
+                // inverse transform: conjugate, forward transform, the conjugate sign does not change the magnitude
+                for (int i = 0; i < plan.size; ++i) {
+                    im[i] = -im[i];
+                }
+                plan.transform(re, im);
+                compress(line, re, im);
+            }
+        }
+
+        private void unpack(int line, float[] re, float[] im) {
+            int position = offset + line * samples * bytesPerSample;
+            for (int i = 0; i < samples; ++i, position += bytesPerSample) {
+                switch (bytesPerSample) {
+                    case 1:
+                        re[i] = rf.get(position);
+                        break;
+                    case 2:
+                        re[i] = rf.getShort(position);
+                        break;
+                    default:
+                        re[i] = rf.getInt(position);
+                        break;
+                }
+                im[i] = 0;
+            }
+            for (int i = samples; i < plan.size; ++i) {
+                re[i] = 0;
+                im[i] = 0;
+            }
+        }
+
+        // Keep the positive frequencies doubled, drop the negative ones.
+        private void analytic(float[] re, float[] im) {
+            final int half = plan.size / 2;
+            for (int i = 1; i < half; ++i) {
+                re[i] *= 2;
+                im[i] *= 2;
+            }
+            for (int i = half + 1; i < plan.size; ++i) {
+                re[i] = 0;
+                im[i] = 0;
+            }
+        }
+
+        private void compress(int line, float[] re, float[] im) {
+            final int base = line * samples;
+            for (int i = 0; i < samples; ++i) {
+                final double magnitude = Math.sqrt((double) re[i] * re[i] + (double) im[i] * im[i]);
+                final double db = magnitude > 0 ? 20 * Math.log10(magnitude) + logOffset : -dynamicRange;
+                final double level = (db + dynamicRange) * levelsPerDb;
+                envelope[base + i] = (byte) (level <= 0 ? 0 : level >= 255 ? 255 : (int) level);
+            }
+        }
+    }
+
+    // Radix-2 in-place complex FFT tables for one size.
+    private static final class FftPlan {
+        final int size;
+        final int[] reversed;
+        final float[] cos;
+        final float[] sin;
+
+        FftPlan(int size) {
+            this.size = size;
+            reversed = new int[size];
+            final int bits = Integer.numberOfTrailingZeros(size);
+            for (int i = 0; i < size; ++i) {
+                reversed[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+            }
+            cos = new float[size / 2];
+            sin = new float[size / 2];
+            for (int i = 0; i < size / 2; ++i) {
+                cos[i] = (float) Math.cos(-2 * Math.PI * i / size);
+                sin[i] = (float) Math.sin(-2 * Math.PI * i / size);
+            }
+        }
+
+        void transform(float[] re, float[] im) {
+            for (int i = 0; i < size; ++i) {
+                final int j = reversed[i];
+                if (j > i) {
+                    float t = re[i];
+                    re[i] = re[j];
+                    re[j] = t;
+                    t = im[i];
+                    im[i] = im[j];
+                    im[j] = t;
+                }
+            }
+            for (int length = 2; length <= size; length <<= 1) {
+                final int half = length / 2;
+                final int step = size / length;
+                for (int start = 0; start < size; start += length) {
+                    for (int k = 0; k < half; ++k) {
+                        final float wr = cos[k * step];
+                        final float wi = sin[k * step];
+                        final int a = start + k;
+                        final int b = a + half;
+                        final float xr = re[b] * wr - im[b] * wi;
+                        final float xi = re[b] * wi + im[b] * wr;
+                        re[b] = re[a] - xr;
+                        im[b] = im[a] - xi;
+                        re[a] += xr;
+                        im[a] += xi;
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Scratch {
+        float[] re = new float[0];
+        float[] im = new float[0];
+
+        void ensure(int size) {
+            if (re.length < size) {
+                re = new float[size];
+                im = new float[size];
+            }
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package me.clarius.sdk.solum.example;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Convert raw envelope frames (lines of samples) into a Cartesian image.
+ * <p>
+ * For each output pixel, the position in the acquisition grid is computed once per geometry and cached in a
+ * lookup table: the index of the nearest sample towards the probe and the bilinear interpolation weights.
+ * The per-frame pass only reads the table, does not allocate, and is split into row stripes across threads.
+ * <p>
+ * Linear arrays have parallel lines; curved arrays have lines fanning out from the center of curvature.
+ */
+
+public class ScanConverter {
+    private final ParallelStripes stripes;
+    private final Map<Geometry, Table> tables;
+    private final ConvertTask task = new ConvertTask();
+
+    /**
+     * @param stripes   threads used to convert the frames.
+     * @param maxTables maximum number of geometries kept in the cache.
+     */
+    public ScanConverter(ParallelStripes stripes, final int maxTables) {
+        this.stripes = stripes;
+        this.tables = new LinkedHashMap<Geometry, Table>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Geometry, Table> eldest) {
+                return size() > maxTables;
+            }
+        };
+    }
+
+    /**
+     * Convert an 8-bit envelope frame into opaque grayscale ARGB pixels.
+     *
+     * @param geometry acquisition and output geometry.
+     * @param envelope lines * samples values, one line after the other.
+     * @param argb     output pixels, width * height, pixels outside the field of view are black.
+     */
+    public synchronized void convert(Geometry geometry, byte[] envelope, int[] argb) {
+        if (envelope.length < geometry.lines * geometry.samples)
+            throw new IllegalArgumentException("envelope too small for geometry");
+        if (argb.length < geometry.width * geometry.height)
+            throw new IllegalArgumentException("output too small for geometry");
+        task.table = getTable(geometry);
+        task.width = geometry.width;
+        task.samples = geometry.samples;
+        task.envelope = envelope;
+        task.argb = argb;
+        try {
+            stripes.run(task, geometry.height);
+        } finally {
+            task.envelope = null;
+            task.argb = null;
+        }
+    }
+
+    /**
+     * Physical size of an output pixel for the given geometry.
+     */
+    public double getMicronsPerPixel(Geometry geometry) {
+        return getTable(geometry).micronsPerPixel;
+    }
+
+    private Table getTable(Geometry geometry) {
+        synchronized (tables) {
+            Table table = tables.get(geometry);
+            if (table == null) {
+                table = new Table(geometry);
+                tables.put(geometry, table);
+            }
+            return table;
+        }
+    }
+
+    /**
+     * Describe the acquisition grid and the output image size.
+     */
+    public static final class Geometry {
+        final int lines;
+        final int samples;
+        final double axialMicrons;
+        final double lateralMicrons;
+        final double radiusMicrons;
+        final int width;
+        final int height;
+
+        /**
+         * @param lines          number of lines.
+         * @param samples        number of samples per line.
+         * @param axialMicrons   distance between samples along a line.
+         * @param lateralMicrons distance between lines, measured on the probe surface for curved arrays.
+         * @param radiusMicrons  radius of curvature of the probe surface, zero for linear arrays.
+         * @param width          output width in pixels.
+         * @param height         output height in pixels.
+         */
+        public Geometry(int lines, int samples, double axialMicrons, double lateralMicrons, double radiusMicrons,
+                        int width, int height) {
+            if (lines < 2 || samples < 2 || width < 1 || height < 1 || axialMicrons <= 0 || lateralMicrons <= 0)
+                throw new IllegalArgumentException("invalid scan conversion geometry");
+            this.lines = lines;
+            this.samples = samples;
+            this.axialMicrons = axialMicrons;
+            this.lateralMicrons = lateralMicrons;
+            this.radiusMicrons = Math.max(0, radiusMicrons);
+            this.width = width;
+            this.height = height;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        boolean isCurved() {
+            return radiusMicrons > 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Geometry)) return false;
+            Geometry other = (Geometry) o;
+            return lines == other.lines && samples == other.samples
+                    && Double.compare(axialMicrons, other.axialMicrons) == 0
+                    && Double.compare(lateralMicrons, other.lateralMicrons) == 0
+                    && Double.compare(radiusMicrons, other.radiusMicrons) == 0
+                    && width == other.width && height == other.height;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = lines;
+            result = 31 * result + samples;
+            result = 31 * result + Double.hashCode(axialMicrons);
+            result = 31 * result + Double.hashCode(lateralMicrons);
+            result = 31 * result + Double.hashCode(radiusMicrons);
+            result = 31 * result + width;
+            result = 31 * result + height;
+            return result;
+        }
+    }
+
+    // Reused for every frame to avoid allocating a task.
+    private static final class ConvertTask implements ParallelStripes.Task {
+        Table table;
+        int width;
+        int samples;
+        byte[] envelope;
+        int[] argb;
+
+        @Override
+        public void run(int begin, int end) {
+            for (int p = begin * width, last = end * width; p < last; ++p) {
+                final int index = table.index[p];
+                if (index < 0) {
+                    argb[p] = 0xff000000;
+                    continue;
+                }
+                final int fs = table.sampleWeight[p] & 0xff;
+                final int fl = table.lineWeight[p] & 0xff;
+                final int v00 = envelope[index] & 0xff;
+                final int v01 = envelope[index + 1] & 0xff;
+                final int v10 = envelope[index + samples] & 0xff;
+                final int v11 = envelope[index + samples + 1] & 0xff;
+                final int top = (v00 << 8) + (v01 - v00) * fs;
+                final int bottom = (v10 << 8) + (v11 - v10) * fs;
+                final int v = ((top << 8) + (bottom - top) * fl) >> 16;
+                argb[p] = 0xff000000 | (v << 16) | (v << 8) | v;
+            }
+        }
+    }
+
+    // Lookup table for one geometry, the image is fitted in the output keeping a 1:1 aspect ratio.
+    private static final class Table {
+        final int[] index;
+        final byte[] sampleWeight;
+        final byte[] lineWeight;
+        final double micronsPerPixel;
+
+        Table(Geometry g) {
+            final int size = g.width * g.height;
+            index = new int[size];
+            sampleWeight = new byte[size];
+            lineWeight = new byte[size];
+
+            final double center = (g.lines - 1) / 2.0;
+            final double depth = (g.samples - 1) * g.axialMicrons;
+            final double minX, maxX, minZ, maxZ;
+            final double angleStep = g.isCurved() ? g.lateralMicrons / g.radiusMicrons : 0;
+            if (g.isCurved()) {
+                final double maxAngle = center * angleStep;
+                final double outer = g.radiusMicrons + depth;
+                maxX = outer * Math.sin(Math.min(maxAngle, Math.PI / 2));
+                minX = -maxX;
+                minZ = g.radiusMicrons * Math.cos(maxAngle) - g.radiusMicrons;
+                maxZ = depth;
+            } else {
+                maxX = center * g.lateralMicrons;
+                minX = -maxX;
+                minZ = 0;
+                maxZ = depth;
+            }
+            micronsPerPixel = Math.max((maxX - minX) / g.width, (maxZ - minZ) / g.height);
+            // center the field of view horizontally, start at the top
+            final double offsetX = minX - (g.width * micronsPerPixel - (maxX - minX)) / 2;
+
+            for (int row = 0; row < g.height; ++row) {
+                final double z = minZ + (row + 0.5) * micronsPerPixel;
+                for (int col = 0; col < g.width; ++col) {
+                    final double x = offsetX + (col + 0.5) * micronsPerPixel;
+                    final double line, sample;
+                    if (g.isCurved()) {
+                        final double zc = z + g.radiusMicrons;
+                        line = Math.atan2(x, zc) / angleStep + center;
+                        sample = (Math.sqrt(x * x + zc * zc) - g.radiusMicrons) / g.axialMicrons;
+                    } else {
+                        line = x / g.lateralMicrons + center;
+                        sample = z / g.axialMicrons;
+                    }
+                    final int p = row * g.width + col;
+                    if (line < 0 || line > g.lines - 1 || sample < 0 || sample > g.samples - 1) {
+                        index[p] = -1;
+                        continue;
+                    }
+                    // keep the 2x2 neighbourhood inside the grid
+                    final int l = Math.min((int) line, g.lines - 2);
+                    final int s = Math.min((int) sample, g.samples - 2);
+                    index[p] = l * g.samples + s;
+                    lineWeight[p] = (byte) Math.round((line - l) * 255);
+                    sampleWeight[p] = (byte) Math.round((sample - s) * 255);
+                }
+            }
+        }
+    }
+}
@@ -1,21 +1,213 @@
 package me.clarius.sdk.solum.example;
 
 import android.graphics.Bitmap;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
 
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 
+import me.clarius.sdk.ProcessedImageInfo;
+
 /**
  * View model for Solum live data
  * <p>
  * Read more about live data: https://developer.android.com/topic/libraries/architecture/livedata.
+ * <p>
+ * Images are either posted to the processed image live data, or drawn directly by a surface renderer if one is set.
+ * With smooth presentation enabled, images first go through a presentation scheduler releasing them on vsync.
+ * <p>
+ * The latest frames are kept in a cine buffer to be reviewed once frozen.
+ * The latency tracker is told when live images are handed to the display and when they are displayed.
+ * The startup trace covers the whole process and ends with the first live image displayed.
  */
 
 public class SolumViewModel extends ViewModel {
 
+    private static final long MAX_POOLED_BYTES = 32L * 1024 * 1024;
+    private static final int CINE_MAX_BYTES = 128 * 1024 * 1024;
+    private static final long CINE_MAX_DURATION_NANOS = 30_000_000_000L;
+    private static final int CINE_MAX_FRAMES = 4096;
+    private static final int LATENCY_TRACKED_FRAMES = 64;
+    private static final long NOT_LIVE = Long.MIN_VALUE;
+    private static final String TAG = "Solum";
+    private static final String FIRST_IMAGE = "first image displayed";
+    private static final StartupTrace startupTrace = new StartupTrace(launchNanos());
+    private static volatile boolean firstImageDisplayed = false;
+
     private final MutableLiveData<Bitmap> processedImage = new MutableLiveData<>();
+    private final MutableLiveData<Bitmap> rawImage = new MutableLiveData<>();
+    private final BitmapPool bitmapPool = new BitmapPool(MAX_POOLED_BYTES);
+    private final CineBuffer cineBuffer = new CineBuffer(CINE_MAX_BYTES, CINE_MAX_DURATION_NANOS, CINE_MAX_FRAMES, bitmapPool);
+    private final LatencyTracker latencyTracker = new LatencyTracker(LATENCY_TRACKED_FRAMES);
+    private Bitmap displayedImage;
+    // timestamp of the last live image posted to the live data, NOT_LIVE for cine frames
+    private volatile long postedTimestamp = NOT_LIVE;
+    private Bitmap displayedRawImage;
+    private volatile SurfaceRenderer surfaceRenderer;
+    private volatile PresentationScheduler presentationScheduler;
+    private long presentationMinDelayNanos = 0;
+    private long presentationMaxDelayNanos = 100_000_000;
 
     public MutableLiveData<Bitmap> getProcessedImage() {
         return processedImage;
     }
+
+    /**
+     * Scan converted raw images.
+     */
+    public MutableLiveData<Bitmap> getRawImage() {
+        return rawImage;
+    }
+
+    public BitmapPool getBitmapPool() {
+        return bitmapPool;
+    }
+
+    public LatencyTracker getLatencyTracker() {
+        return latencyTracker;
+    }
+
+    public StartupTrace getStartupTrace() {
+        return startupTrace;
+    }
+
+    public CineBuffer getCineBuffer() {
+        return cineBuffer;
+    }
+
+    /**
+     * Render the next images into a surface instead of the live data, or null to go back to the live data.
+     */
+    public void setSurfaceRenderer(SurfaceRenderer renderer) {
+        surfaceRenderer = renderer;
+    }
+
+    /**
+     * Pace the images on vsync according to their timestamps, at the cost of some latency.
+     */
+    public synchronized void setSmoothPresentation(boolean enabled) {
+        if (enabled && presentationScheduler == null) {
+            presentationScheduler = new PresentationScheduler(this::presentImage, bitmapPool);
+            presentationScheduler.setLatencyBudget(presentationMinDelayNanos, presentationMaxDelayNanos);
+        } else if (!enabled && presentationScheduler != null) {
+            presentationScheduler.release();
+            presentationScheduler = null;
+        }
+    }
+
+    /**
+     * Bound the buffering delay of smooth presentation, kept when smooth presentation is toggled.
+     *
+     * @see PresentationScheduler#setLatencyBudget(long, long)
+     */
+    public synchronized void setPresentationLatencyBudget(long minDelayNanos, long maxDelayNanos) {
+        if (presentationScheduler != null) {
+            presentationScheduler.setLatencyBudget(minDelayNanos, maxDelayNanos);
+        }
+        presentationMinDelayNanos = minDelayNanos;
+        presentationMaxDelayNanos = maxDelayNanos;
+    }
+
+    public synchronized long getPresentationMaxDelayNanos() {
+        return presentationMaxDelayNanos;
+    }
+
+    /**
+     * The active presentation scheduler, or null if smooth presentation is disabled.
+     */
+    public PresentationScheduler getPresentationScheduler() {
+        return presentationScheduler;
+    }
+
+    /**
+     * Publish a new image, can be called from any thread.
+     */
+    public void publishImage(Bitmap bitmap, ProcessedImageInfo info) {
+        PresentationScheduler scheduler = presentationScheduler;
+        if (scheduler != null) {
+            scheduler.submit(bitmap, info);
+        } else {
+            presentImage(bitmap, info);
+        }
+    }
+
+    /**
+     * Show a frame of the cine buffer right away, bypassing the presentation scheduler.
+     */
+    public void showCineFrame(int index) {
+        final CineBuffer.Frame frame = cineBuffer.decode(index);
+        if (frame != null) {
+            showImage(frame.bitmap, frame.info, false);
+        }
+    }
+
+    private void presentImage(Bitmap bitmap, ProcessedImageInfo info) {
+        latencyTracker.onPresented(info.tm);
+        showImage(bitmap, info, true);
+    }
+
+    private void showImage(Bitmap bitmap, ProcessedImageInfo info, boolean live) {
+        SurfaceRenderer renderer = surfaceRenderer;
+        if (renderer != null && renderer.render(bitmap, info)) {
+            if (live) {
+                latencyTracker.onDisplayed(info.tm);
+                onLiveImageDisplayed();
+            }
+            return;
+        }
+        postedTimestamp = live ? info.tm : NOT_LIVE;
+        processedImage.postValue(bitmap);
+    }
+
+    /**
+     * Must be called by the observer once the bitmap is on screen, the previously displayed bitmap goes back to the pool.
+     */
+    public void onImageDisplayed(Bitmap bitmap) {
+        long timestamp = postedTimestamp;
+        if (timestamp != NOT_LIVE) {
+            latencyTracker.onDisplayed(timestamp);
+            onLiveImageDisplayed();
+        }
+        if (displayedImage != null && displayedImage != bitmap) {
+            bitmapPool.release(displayedImage);
+        }
+        displayedImage = bitmap;
+    }
+
+    private static void onLiveImageDisplayed() {
+        if (!firstImageDisplayed) {
+            firstImageDisplayed = true;
+            if (startupTrace.mark(FIRST_IMAGE)) {
+                Log.i(TAG, "Launch to first image: " + startupTrace.getMilestoneNanos(FIRST_IMAGE) / 1_000_000
+                        + " ms, startup trace:\n" + startupTrace);
+            }
+        }
+    }
+
+    // The process start time is only available in the elapsed realtime time base.
+    private static long launchNanos() {
+        return System.nanoTime() - (SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime()) * 1_000_000;
+    }
+
+    /**
+     * Same as onImageDisplayed() for raw images.
+     */
+    public void onRawImageDisplayed(Bitmap bitmap) {
+        if (displayedRawImage != null && displayedRawImage != bitmap) {
+            bitmapPool.release(displayedRawImage);
+        }
+        displayedRawImage = bitmap;
+    }
+
+    @Override
+    protected void onCleared() {
+        setSmoothPresentation(false);
+        surfaceRenderer = null;
+        displayedImage = null;
+        displayedRawImage = null;
+        cineBuffer.clear();
+        bitmapPool.clear();
+    }
 }
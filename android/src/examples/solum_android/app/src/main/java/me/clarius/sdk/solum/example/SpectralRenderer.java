@@ -0,0 +1,164 @@
+package me.clarius.sdk.solum.example;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.widget.ImageView;
+
+/**
+ * Periodically draw the visible strip of a spectral waterfall into an image view, from the main thread.
+ * <p>
+ * The strip is kept in a circular bitmap: column k of the waterfall is at x = k modulo the strip width, so only the
+ * columns that came into view since the last refresh are rendered and uploaded, whether new blocks arrived or the
+ * strip was scrolled. The bitmap is drawn in two parts around the oldest column, which is at the wrap point.
+ */
+
+public class SpectralRenderer {
+    private static final long REFRESH_PERIOD_MS = 33;
+
+    private final SpectralWaterfall waterfall;
+    private final Runnable refresh = this::refresh;
+    private final StripDrawable drawable = new StripDrawable();
+    private ImageView view;
+    private Bitmap bitmap;
+    private int[] pixels = new int[0];
+    private long renderedGeneration = -1;
+    private long renderedEnd = 0;
+
+    public SpectralRenderer(SpectralWaterfall waterfall) {
+        this.waterfall = waterfall;
+    }
+
+    public void start(ImageView view) {
+        stop();
+        this.view = view;
+        // the view may have been recreated, render everything again
+        renderedGeneration = -1;
+        view.setImageDrawable(drawable);
+        view.post(refresh);
+    }
+
+    public void stop() {
+        if (view != null) {
+            view.removeCallbacks(refresh);
+            view = null;
+        }
+    }
+
+    private void refresh() {
+        if (view == null) {
+            return;
+        }
+        final long generation = waterfall.getGeneration();
+        final int width = waterfall.getVisibleColumns();
+        final int height = waterfall.getSamples();
+        final long end = waterfall.getVisibleEnd();
+        if (width > 0 && height > 0) {
+            boolean changed = true;
+            if (bitmap == null || bitmap.getWidth() != width || bitmap.getHeight() != height) {
+                bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                drawColumns(end - width, end);
+                drawable.set(bitmap, (int) Math.floorMod(end, (long) width));
+                // set again so that the view measures the new intrinsic size
+                view.setImageDrawable(null);
+                view.setImageDrawable(drawable);
+            } else if (generation != renderedGeneration || Math.abs(end - renderedEnd) >= width) {
+                drawColumns(end - width, end);
+            } else if (end > renderedEnd) {
+                drawColumns(renderedEnd, end);
+            } else if (end < renderedEnd) {
+                // scrolled back, older columns come into view on the left
+                drawColumns(end - width, renderedEnd - width);
+            } else {
+                changed = false;
+            }
+            renderedGeneration = generation;
+            renderedEnd = end;
+            if (changed) {
+                drawable.set(bitmap, (int) Math.floorMod(end, (long) width));
+                view.invalidate();
+            }
+        }
+        view.postDelayed(refresh, REFRESH_PERIOD_MS);
+    }
+
+    // Render and upload the columns from first to last excluded, in at most two runs split at the wrap point.
+    private void drawColumns(long first, long last) {
+        final int width = bitmap.getWidth();
+        final int height = bitmap.getHeight();
+        long from = first;
+        while (from < last) {
+            final int x = (int) Math.floorMod(from, (long) width);
+            final int count = (int) Math.min(last - from, width - x);
+            if (pixels.length < count * height) {
+                pixels = new int[width * height];
+            }
+            waterfall.renderColumns(from, from + count, pixels);
+            bitmap.setPixels(pixels, 0, count, x, 0, count, height);
+            from += count;
+        }
+    }
+
+    // Draw a circular strip with its oldest column on the left, scaled to the bounds.
+    private static final class StripDrawable extends Drawable {
+        private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        private final Rect source = new Rect();
+        private final RectF destination = new RectF();
+        private Bitmap bitmap;
+        private int split;
+
+        void set(Bitmap bitmap, int split) {
+            this.bitmap = bitmap;
+            this.split = split;
+        }
+
+        @Override
+        public void draw(Canvas canvas) {
+            if (bitmap == null) {
+                return;
+            }
+            final Rect bounds = getBounds();
+            final int width = bitmap.getWidth();
+            final int height = bitmap.getHeight();
+            final float splitX = bounds.left + bounds.width() * (float) (width - split) / width;
+            source.set(split, 0, width, height);
+            destination.set(bounds.left, bounds.top, splitX, bounds.bottom);
+            canvas.drawBitmap(bitmap, source, destination, paint);
+            if (split > 0) {
+                source.set(0, 0, split, height);
+                destination.set(splitX, bounds.top, bounds.right, bounds.bottom);
+                canvas.drawBitmap(bitmap, source, destination, paint);
+            }
+        }
+
+        @Override
+        public int getIntrinsicWidth() {
+            return bitmap != null ? bitmap.getWidth() : -1;
+        }
+
+        @Override
+        public int getIntrinsicHeight() {
+            return bitmap != null ? bitmap.getHeight() : -1;
+        }
+
+        @Override
+        public void setAlpha(int alpha) {
+            paint.setAlpha(alpha);
+        }
+
+        @Override
+        public void setColorFilter(ColorFilter colorFilter) {
+            paint.setColorFilter(colorFilter);
+        }
+
+        @Override
+        public int getOpacity() {
+            return PixelFormat.OPAQUE;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package me.clarius.sdk.solum.example;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Circular column store for M-mode and PW spectral strips.
+ * <p>
+ * Each spectral block holds lines (columns in time) of samples (depth for M, velocity for PW).
+ * Columns are appended in place in a circular buffer, so a block costs O(new lines) whatever the strip width,
+ * and so does rendering them with renderColumns().
+ * The buffer retains more history than the visible strip to scroll back once frozen.
+ * The strip width in columns follows the sweep duration and the line period of the incoming blocks;
+ * the store is reset when the block geometry changes.
+ */
+
+public class SpectralWaterfall {
+    private final double sweepSeconds;
+    private final double historySeconds;
+    private byte[] columns = new byte[0];
+    private int capacity = 0;
+    private int visibleColumns = 0;
+    private int samples = 0;
+    private double period = 0;
+    private boolean pw = false;
+    private double scalePerSample = 0;
+    // total number of columns appended since the last reset
+    private long written = 0;
+    private boolean frozen = false;
+    private int scrollBack = 0;
+    private long generation = 0;
+
+    /**
+     * @param sweepSeconds   duration shown across the visible strip.
+     * @param historySeconds duration retained, at least the sweep duration.
+     */
+    public SpectralWaterfall(double sweepSeconds, double historySeconds) {
+        if (sweepSeconds <= 0)
+            throw new IllegalArgumentException("sweep duration must be positive");
+        this.sweepSeconds = sweepSeconds;
+        this.historySeconds = Math.max(sweepSeconds, historySeconds);
+    }
+
+    /**
+     * Append a spectral block, blocks are ignored while frozen.
+     *
+     * @param block          lines * samples values, one line after the other, read from the buffer position
+     *                       which is left unchanged.
+     * @param bitsPerSample  8 or 16 (only the most significant byte is kept).
+     * @param period         line acquisition period in seconds.
+     * @param pw             true for a PW spectrum, false for an M spectrum.
+     * @param scalePerSample microns per sample (M) or meters per second per sample (PW).
+     */
+    public synchronized void append(ByteBuffer block, int lines, int samples, int bitsPerSample,
+                                    double period, boolean pw, double scalePerSample) {
+        if (frozen) {
+            return;
+        }
+        if (bitsPerSample != 8 && bitsPerSample != 16)
+            throw new IllegalArgumentException("unsupported bits per sample: " + bitsPerSample);
+        if (samples != this.samples || period != this.period || pw != this.pw || scalePerSample != this.scalePerSample) {
+            reset(samples, period, pw, scalePerSample);
+        }
+        final int bytesPerSample = bitsPerSample / 8;
+        int position = block.position();
+        // only the last capacity lines of a huge block can be kept
+        final int skipped = Math.max(0, lines - capacity);
+        position += skipped * samples * bytesPerSample;
+        written += skipped;
+        for (int line = skipped; line < lines; ++line) {
+            final int base = (int) (written % capacity) * samples;
+            if (bytesPerSample == 1) {
+                for (int i = 0; i < samples; ++i) {
+                    columns[base + i] = block.get(position + i);
+                }
+            } else {
+                // little endian, keep the high byte
+                for (int i = 0; i < samples; ++i) {
+                    columns[base + i] = block.get(position + 2 * i + 1);
+                }
+            }
+            position += samples * bytesPerSample;
+            ++written;
+        }
+    }
+
+    /**
+     * Stop appending new blocks, the retained history can then be scrolled back.
+     */
+    public synchronized void setFrozen(boolean frozen) {
+        this.frozen = frozen;
+        if (!frozen) {
+            scrollBack = 0;
+        }
+    }
+
+    public synchronized boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Show the strip ending the given number of columns before the newest one, only while frozen.
+     */
+    public synchronized void setScrollBack(int columnCount) {
+        if (!frozen) {
+            return;
+        }
+        scrollBack = Math.max(0, Math.min(columnCount, getMaxScrollBack()));
+    }
+
+    public synchronized int getMaxScrollBack() {
+        return (int) Math.max(0, Math.min(written, capacity) - visibleColumns);
+    }
+
+    /**
+     * Incremented when the geometry changes and the columns are cleared, everything must be rendered again.
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Index one past the newest visible column, counted since the last geometry change.
+     * Column k is always drawn at x = k modulo the visible columns, so a renderer keeping a circular strip only
+     * renders the columns between two visible ends, see renderColumns().
+     */
+    public synchronized long getVisibleEnd() {
+        return written - scrollBack;
+    }
+
+    public synchronized int getVisibleColumns() {
+        return visibleColumns;
+    }
+
+    public synchronized int getSamples() {
+        return samples;
+    }
+
+    public synchronized boolean isPw() {
+        return pw;
+    }
+
+    /**
+     * Physical value of a sample row: depth in microns for M, velocity in m/s for PW (zero velocity at the
+     * middle row).
+     */
+    public synchronized double getValueAt(int sample) {
+        return pw ? (sample - samples / 2.0) * scalePerSample : sample * scalePerSample;
+    }
+
+    /**
+     * Render the columns from index first included to last excluded, see getVisibleEnd().
+     *
+     * @param argb output, (last - first) * getSamples() pixels in rows of last - first pixels; columns not acquired
+     *             yet or not retained anymore are black.
+     */
+    public synchronized void renderColumns(long first, long last, int[] argb) {
+        final int width = (int) (last - first);
+        final long oldest = Math.max(0, written - capacity);
+        for (int x = 0; x < width; ++x) {
+            final long index = first + x;
+            final int base = index < oldest || index >= written ? -1 : (int) (index % capacity) * samples;
+            for (int y = 0; y < samples; ++y) {
+                final int v = base < 0 ? 0 : columns[base + y] & 0xff;
+                argb[y * width + x] = 0xff000000 | (v << 16) | (v << 8) | v;
+            }
+        }
+    }
+
+    private void reset(int samples, double period, boolean pw, double scalePerSample) {
+        this.samples = samples;
+        this.period = period;
+        this.pw = pw;
+        this.scalePerSample = scalePerSample;
+        visibleColumns = Math.max(1, (int) Math.round(sweepSeconds / period));
+        capacity = Math.max(visibleColumns, (int) Math.round(historySeconds / period));
+        if (columns.length != capacity * samples) {
+            columns = new byte[capacity * samples];
+        }
+        written = 0;
+        scrollBack = 0;
+        ++generation;
+    }
+}
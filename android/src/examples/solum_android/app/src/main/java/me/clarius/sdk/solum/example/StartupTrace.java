@@ -0,0 +1,109 @@
+package me.clarius.sdk.solum.example;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Timings of the startup steps and milestones, relative to the process launch.
+ * <p>
+ * Steps have a start and an end, milestones (first connection, first frame...) are only recorded the first time
+ * they are reached, so the trace describes the cold start even if the session goes on.
+ * Thread-safe.
+ */
+
+public class StartupTrace {
+    private final long originNanos;
+    private final List<Span> spans = new ArrayList<>();
+    private final Map<String, Long> milestones = new HashMap<>();
+
+    /**
+     * @param originNanos launch time in System.nanoTime() time base.
+     */
+    public StartupTrace(long originNanos) {
+        this.originNanos = originNanos;
+    }
+
+    public Span begin(String name) {
+        final Span span = new Span(name, System.nanoTime() - originNanos);
+        synchronized (this) {
+            spans.add(span);
+        }
+        return span;
+    }
+
+    /**
+     * Record a milestone if not reached yet.
+     *
+     * @return true the first time.
+     */
+    public synchronized boolean mark(String name) {
+        if (milestones.containsKey(name)) {
+            return false;
+        }
+        milestones.put(name, System.nanoTime() - originNanos);
+        return true;
+    }
+
+    /**
+     * Time from the launch to a milestone, or -1 if not reached.
+     */
+    public synchronized long getMilestoneNanos(String name) {
+        final Long elapsed = milestones.get(name);
+        return elapsed != null ? elapsed : -1;
+    }
+
+    /**
+     * One line per step and milestone in chronological order: start since launch, name, and duration of steps.
+     */
+    @Override
+    public synchronized String toString() {
+        final List<Line> lines = new ArrayList<>();
+        for (Span span : spans) {
+            final String duration = span.endNanos < 0 ? "running" : (span.endNanos - span.startNanos) / 1_000_000 + " ms";
+            lines.add(new Line(span.startNanos, span.name + "  " + duration));
+        }
+        for (Map.Entry<String, Long> milestone : milestones.entrySet()) {
+            lines.add(new Line(milestone.getValue(), milestone.getKey()));
+        }
+        lines.sort(Comparator.comparingLong(line -> line.startNanos));
+        final StringBuilder trace = new StringBuilder();
+        for (Line line : lines) {
+            trace.append(String.format(Locale.ROOT, "%+7d ms  %s%n", line.startNanos / 1_000_000, line.text));
+        }
+        return trace.toString();
+    }
+
+    public final class Span {
+        final String name;
+        final long startNanos;
+        // written under the trace lock
+        long endNanos = -1;
+
+        Span(String name, long startNanos) {
+            this.name = name;
+            this.startNanos = startNanos;
+        }
+
+        public void end() {
+            synchronized (StartupTrace.this) {
+                if (endNanos < 0) {
+                    endNanos = System.nanoTime() - originNanos;
+                }
+            }
+        }
+    }
+
+    private static final class Line {
+        final long startNanos;
+        final String text;
+
+        Line(long startNanos, String text) {
+            this.startNanos = startNanos;
+            this.text = text;
+        }
+    }
+}
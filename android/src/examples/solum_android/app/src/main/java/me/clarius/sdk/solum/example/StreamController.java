@@ -0,0 +1,234 @@
+package me.clarius.sdk.solum.example;
+
+import java.util.Locale;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import me.clarius.sdk.ImageFormat;
+import me.clarius.sdk.ImagingState;
+import me.clarius.sdk.Param;
+import me.clarius.sdk.Solum;
+
+/**
+ * Adapt the image stream to the link: lighter images when frames go missing, back to full quality once the
+ * link is healthy again.
+ * <p>
+ * Every second while imaging, the frames received are compared with the frame rate reported by the probe status,
+ * counting the frames dropped by the app as missing too, and the longest gap between two frames is checked for
+ * stalls. A window is bad if too many frames are missing, the stream stalled or the probe warned about the link
+ * (PoorWifi, LowBandwidth), and good if almost no frame is missing. The stream steps down one level after a few bad
+ * windows (immediately on a link warning) and up one level only after many good windows, and never changes
+ * twice within a settling time, so it does not flap around a threshold.
+ * Levels trade image quality for bandwidth: JPEG images instead of uncompressed ones, then smaller images,
+ * then eco mode. The SDK has no JPEG quality setting, the format is the only compression knob.
+ */
+
+public class StreamController {
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long SETTLE_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final double BAD_MISSING_RATIO = 0.15;
+    private static final double GOOD_MISSING_RATIO = 0.03;
+    private static final double STALL_PERIODS = 4;
+    private static final int BAD_WINDOWS_TO_DEGRADE = 2;
+    private static final int GOOD_WINDOWS_TO_RECOVER = 10;
+
+    private final Solum solum;
+    private final ParamCommandQueue commandQueue;
+    private final ScheduledExecutorService scheduler;
+    private final LongSupplier appDroppedFrames;
+    private final Listener listener;
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong maxGapNanos = new AtomicLong();
+    private volatile long lastArrivalNanos = 0;
+    private volatile boolean linkWarning = false;
+    private volatile Level level = Level.FULL;
+    // accessed on the scheduler thread only
+    private ScheduledFuture<?> evaluation;
+    // set from the status callback
+    private volatile double probeFrameRate = 0;
+    private long lastDropped;
+    private long lastChangeNanos;
+    private int badWindows = 0;
+    private int goodWindows = 0;
+    private int baseWidth = 640;
+    private int baseHeight = 480;
+
+    /**
+     * @param appDroppedFrames total of the frames received but dropped by the app, for instance by the converter.
+     */
+    public StreamController(Solum solum, ParamCommandQueue commandQueue, ScheduledExecutorService scheduler,
+                            LongSupplier appDroppedFrames, Listener listener) {
+        this.solum = solum;
+        this.commandQueue = commandQueue;
+        this.scheduler = scheduler;
+        this.appDroppedFrames = appDroppedFrames;
+        this.listener = listener;
+        this.lastChangeNanos = System.nanoTime() - SETTLE_NANOS;
+    }
+
+    /**
+     * Size of the images at full quality, the lower levels use a fraction of it.
+     * Sent to the probe now if imaging, or when imaging starts.
+     */
+    public void setBaseOutputSize(int width, int height) {
+        scheduler.execute(() -> {
+            baseWidth = width;
+            baseHeight = height;
+            if (evaluation != null) {
+                applyOutputSize();
+            }
+        });
+    }
+
+    /**
+     * Called for each processed image received, from the Solum listener.
+     */
+    public void onFrame() {
+        final long now = System.nanoTime();
+        final long last = lastArrivalNanos;
+        lastArrivalNanos = now;
+        frames.incrementAndGet();
+        if (last != 0) {
+            final long gap = now - last;
+            long max = maxGapNanos.get();
+            while (gap > max && !maxGapNanos.compareAndSet(max, gap)) {
+                max = maxGapNanos.get();
+            }
+        }
+    }
+
+    /**
+     * Called from the Solum listener on imaging state changes; evaluates the link while imaging.
+     */
+    public void onImaging(ImagingState state, boolean imaging) {
+        if (state == ImagingState.PoorWifi || state == ImagingState.LowBandwidth) {
+            linkWarning = true;
+        }
+        scheduler.execute(() -> setActive(imaging));
+    }
+
+    private void setActive(boolean active) {
+        if (active == (evaluation != null)) {
+            return;
+        }
+        if (active) {
+            resetWindow();
+            badWindows = 0;
+            goodWindows = 0;
+            lastArrivalNanos = 0;
+            // the stream may not match the current level yet, the format included
+            solum.setFormat(level.format);
+            applyOutputSize();
+            evaluation = scheduler.scheduleAtFixedRate(this::evaluate, WINDOW_NANOS, WINDOW_NANOS, TimeUnit.NANOSECONDS);
+        } else {
+            evaluation.cancel(false);
+            evaluation = null;
+        }
+    }
+
+    private void evaluate() {
+        solum.getStatus(status -> status.ifPresent(s -> probeFrameRate = s.frameRate));
+        final double expected = probeFrameRate * WINDOW_NANOS / 1e9;
+        final long received = frames.getAndSet(0);
+        final long dropped = appDroppedFrames.getAsLong();
+        final long appDropped = dropped - lastDropped;
+        lastDropped = dropped;
+        final long gap = maxGapNanos.getAndSet(0);
+        final boolean warning = linkWarning;
+        linkWarning = false;
+        if (expected <= 0) {
+            // frame rate not known yet
+            return;
+        }
+        final double missing = Math.max(0, Math.min(1, 1 - (received - appDropped) / expected));
+        final boolean stalled = gap > STALL_PERIODS * 1e9 / probeFrameRate;
+        final String measures = String.format(Locale.ROOT, "%d/%.0f frames, %d dropped, %.0f%% missing, max gap %d ms",
+                received, expected, appDropped, missing * 100, gap / 1_000_000);
+        if (warning || stalled || missing > BAD_MISSING_RATIO) {
+            goodWindows = 0;
+            ++badWindows;
+            if (warning || badWindows >= BAD_WINDOWS_TO_DEGRADE) {
+                final String cause = warning ? "link warning" : stalled ? "stream stalled" : "frames missing";
+                change(level.lower(), cause + ", " + measures);
+            }
+        } else if (missing < GOOD_MISSING_RATIO) {
+            badWindows = 0;
+            ++goodWindows;
+            if (goodWindows >= GOOD_WINDOWS_TO_RECOVER) {
+                change(level.higher(), "link healthy for " + goodWindows + " s, " + measures);
+            }
+        } else {
+            // in between thresholds, keep the current level
+            badWindows = 0;
+            goodWindows = 0;
+        }
+    }
+
+    private void change(Level to, String reason) {
+        final long now = System.nanoTime();
+        if (to == level) {
+            return;
+        }
+        if (now - lastChangeNanos < SETTLE_NANOS) {
+            listener.onDecision(level, level, "settling after the last change, " + reason);
+            return;
+        }
+        final Level from = level;
+        level = to;
+        lastChangeNanos = now;
+        badWindows = 0;
+        goodWindows = 0;
+        solum.setFormat(to.format);
+        applyOutputSize();
+        commandQueue.setParam(Param.EcoMode, to.eco ? 1 : 0);
+        listener.onDecision(from, to, reason);
+        // the change itself disturbs the stream
+        resetWindow();
+    }
+
+    private void applyOutputSize() {
+        solum.setOutputSize((int) (baseWidth * level.scale), (int) (baseHeight * level.scale));
+    }
+
+    private void resetWindow() {
+        frames.set(0);
+        maxGapNanos.set(0);
+        lastDropped = appDroppedFrames.getAsLong();
+    }
+
+    public enum Level {
+        FULL(ImageFormat.Uncompressed, 1, false),
+        COMPRESSED(ImageFormat.Jpeg, 1, false),
+        REDUCED(ImageFormat.Jpeg, 0.75, false),
+        SMALL(ImageFormat.Jpeg, 0.5, false),
+        ECO(ImageFormat.Jpeg, 0.5, true);
+
+        final ImageFormat format;
+        final double scale;
+        final boolean eco;
+
+        Level(ImageFormat format, double scale, boolean eco) {
+            this.format = format;
+            this.scale = scale;
+            this.eco = eco;
+        }
+
+        Level lower() {
+            return values()[Math.min(ordinal() + 1, values().length - 1)];
+        }
+
+        Level higher() {
+            return values()[Math.max(ordinal() - 1, 0)];
+        }
+    }
+
+    public interface Listener {
+        /**
+         * Called for every decision to change the level, with from == to when the change is held back.
+         */
+        void onDecision(Level from, Level to, String reason);
+    }
+}
@@ -1,8 +1,9 @@
 package me.clarius.sdk.solum.example;
 
+import java.util.List;
+import java.util.Locale;
 import java.util.StringJoiner;
 
-import me.clarius.sdk.PointF;
 import me.clarius.sdk.ProbeInfo;
 import me.clarius.sdk.Range;
 import me.clarius.sdk.StatusInfo;
@@ -18,6 +19,13 @@ public class Strings {
                 .toString();
     }
 
+    public static String fromSpectralValue(final SpectralWaterfall waterfall, final int sample) {
+        final double value = waterfall.getValueAt(sample);
+        return waterfall.isPw()
+                ? String.format(Locale.ROOT, "velocity: %.2f m/s", value)
+                : String.format(Locale.ROOT, "depth: %.1f mm", value / 1000);
+    }
+
     public static String fromRange(final Range range) {
         return range.min + "-" + range.max;
     }
@@ -40,11 +48,76 @@ public class Strings {
                 .toString();
     }
 
-    public static String fromPoints(final PointF[] points) {
+    public static String fromPoints(final List<ProbeState.Point> points) {
         StringJoiner strings = new StringJoiner("; ", "[", "]");
-        for (PointF p : points) {
+        for (ProbeState.Point p : points) {
             strings.add(p.x + "," + p.y);
         }
         return strings.toString();
     }
+
+    public static String fromImageConverter(final ImageConverter converter) {
+        return new StringJoiner(", ")
+                .add("submitted: " + converter.getSubmittedCount())
+                .add("dropped: " + converter.getDroppedCount())
+                .add("rendered: " + converter.getRenderedCount())
+                .add("subsampled: " + converter.getSubsampledCount())
+                .toString();
+    }
+
+    public static String fromBitmapPool(final BitmapPool pool) {
+        return new StringJoiner(", ")
+                .add("hits: " + pool.getHits())
+                .add("misses: " + pool.getMisses())
+                .add("held: " + pool.getBytesHeld() + " bytes")
+                .toString();
+    }
+
+    public static String fromPresentationScheduler(final PresentationScheduler scheduler) {
+        return new StringJoiner(", ")
+                .add("jitter: " + scheduler.getJitterNanos() / 1000 + " us")
+                .add("delay: " + scheduler.getBufferingDelayNanos() / 1000 + " us")
+                .add("presented: " + scheduler.getPresentedCount())
+                .add("dropped: " + scheduler.getDroppedCount())
+                .toString();
+    }
+
+    public static String fromParamCommandQueue(final ParamCommandQueue queue) {
+        LatencyHistogram roundTrip = queue.getRoundTripHistogram();
+        return new StringJoiner(", ")
+                .add("sent: " + queue.getSentCount())
+                .add("coalesced: " + queue.getCoalescedCount())
+                .add("round trip p50: " + roundTrip.getPercentileMicros(50) + " us")
+                .add("p99: " + roundTrip.getPercentileMicros(99) + " us")
+                .toString();
+    }
+
+    public static String fromReconnectTimes(final LatencyHistogram times) {
+        return new StringJoiner(", ")
+                .add("count: " + times.getCount())
+                .add("p50: " + times.getPercentileMicros(50) / 1000 + " ms")
+                .add("max: " + times.getMaxMicros() / 1000 + " ms")
+                .toString();
+    }
+
+    public static String fromRawStream(final RawPackageReader.Stream stream) {
+        return new StringJoiner(", ", stream.name + " (", ")")
+                .add("type: " + stream.type)
+                .add("frames: " + stream.frames)
+                .add("lines: " + stream.lines)
+                .add("samples: " + stream.samples)
+                .add("sample size: " + stream.sampleSize)
+                .toString();
+    }
+
+    public static String fromLatencyTracker(final LatencyTracker tracker) {
+        StringJoiner lines = new StringJoiner("\n");
+        for (LatencyTracker.Stage stage : LatencyTracker.Stage.values()) {
+            LatencyHistogram h = tracker.getHistogram(stage);
+            lines.add(String.format(Locale.ROOT, "%-8s p50 %6d us  p99 %6d us  max %6d us",
+                    stage.name().toLowerCase(Locale.ROOT), h.getPercentileMicros(50), h.getPercentileMicros(99),
+                    h.getMaxMicros()));
+        }
+        return lines.toString();
+    }
 }
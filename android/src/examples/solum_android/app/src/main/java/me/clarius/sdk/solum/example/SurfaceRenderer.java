@@ -0,0 +1,110 @@
+package me.clarius.sdk.solum.example;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+import androidx.annotation.NonNull;
+
+import me.clarius.sdk.ProcessedImageInfo;
+
+/**
+ * Draw decoded images straight into a SurfaceView from the calling thread.
+ * <p>
+ * This bypasses LiveData and the ImageView: no work is posted on the main thread for each frame.
+ * Images are scaled to fit the surface keeping the physical aspect ratio given by micronsPerPixel, and centered.
+ * The last drawn bitmap is kept until the next frame is drawn, then returned to the pool.
+ */
+
+public class SurfaceRenderer {
+    private final BitmapPool bitmapPool;
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect source = new Rect();
+    private final RectF destination = new RectF();
+    private final Object lock = new Object();
+    private Surface surface;
+    private int surfaceWidth;
+    private int surfaceHeight;
+    private Bitmap lastBitmap;
+
+    public SurfaceRenderer(BitmapPool bitmapPool) {
+        this.bitmapPool = bitmapPool;
+    }
+
+    public void attach(SurfaceView view) {
+        view.getHolder().addCallback(new SurfaceHolder.Callback() {
+            @Override
+            public void surfaceCreated(@NonNull SurfaceHolder holder) {
+            }
+
+            @Override
+            public void surfaceChanged(@NonNull SurfaceHolder holder, int format, int width, int height) {
+                setSurface(holder.getSurface(), width, height);
+            }
+
+            @Override
+            public void surfaceDestroyed(@NonNull SurfaceHolder holder) {
+                setSurface(null, 0, 0);
+            }
+        });
+    }
+
+    /**
+     * Draw a frame, can be called from any thread.
+     * On success, the renderer takes ownership of the bitmap.
+     *
+     * @return false if no surface is available, the caller keeps ownership of the bitmap.
+     */
+    public boolean render(Bitmap bitmap, ProcessedImageInfo info) {
+        synchronized (lock) {
+            if (surface == null || !surface.isValid()) {
+                return false;
+            }
+            Canvas canvas = surface.lockHardwareCanvas();
+            try {
+                canvas.drawColor(Color.BLACK);
+                computeDestination(bitmap.getWidth(), bitmap.getHeight(), info.micronsPerPixel);
+                source.set(0, 0, bitmap.getWidth(), bitmap.getHeight());
+                canvas.drawBitmap(bitmap, source, destination, paint);
+            } finally {
+                surface.unlockCanvasAndPost(canvas);
+            }
+            if (lastBitmap != null && lastBitmap != bitmap) {
+                bitmapPool.release(lastBitmap);
+            }
+            lastBitmap = bitmap;
+            return true;
+        }
+    }
+
+    // Fit the image physical extent in the surface, centered.
+    private void computeDestination(int width, int height, double micronsPerPixel) {
+        final double um = micronsPerPixel > 0 ? micronsPerPixel : 1.0;
+        final double imageWidth = width * um;
+        final double imageHeight = height * um;
+        final double pixelsPerMicron = Math.min(surfaceWidth / imageWidth, surfaceHeight / imageHeight);
+        final float w = (float) (imageWidth * pixelsPerMicron);
+        final float h = (float) (imageHeight * pixelsPerMicron);
+        final float left = (surfaceWidth - w) / 2;
+        final float top = (surfaceHeight - h) / 2;
+        destination.set(left, top, left + w, top + h);
+    }
+
+    private void setSurface(Surface newSurface, int width, int height) {
+        synchronized (lock) {
+            surface = newSurface;
+            surfaceWidth = width;
+            surfaceHeight = height;
+            if (surface == null && lastBitmap != null) {
+                bitmapPool.release(lastBitmap);
+                lastBitmap = null;
+            }
+        }
+    }
+}
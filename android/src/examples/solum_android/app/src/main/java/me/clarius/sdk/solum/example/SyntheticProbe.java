@@ -0,0 +1,354 @@
+package me.clarius.sdk.solum.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+import me.clarius.sdk.ImageFormat;
+import me.clarius.sdk.ImagingState;
+import me.clarius.sdk.PosInfo;
+import me.clarius.sdk.ProcessedImageInfo;
+import me.clarius.sdk.RawImageInfo;
+import me.clarius.sdk.Solum;
+import me.clarius.sdk.SpectralImageInfo;
+
+/**
+ * Drive a Solum listener with synthetic or recorded frames, without a probe.
+ * <p>
+ * Frames are generated on a dedicated thread at the configured rate, grouped in bursts, delayed by a random jitter
+ * and dropped with a loss pattern, to load the pipeline like a real probe over a poor link.
+ * Frame timestamps follow the nominal schedule (as if stamped by the probe), the jitter only affects the delivery.
+ * Synthetic frames are uncompressed images of scrolling speckle with IMU samples, optionally with raw envelope
+ * frames and M spectral blocks; replayed frames come from a recording made with FrameRecorder, looped.
+ * SyntheticProbeSoakTest drives the image converter with it on a device, the Solum classes need Android.
+ */
+
+public class SyntheticProbe {
+    private static final int IMU_SAMPLES_PER_FRAME = 4;
+    private static final int RAW_LINES = 128;
+    private static final int RAW_SAMPLES = 512;
+    private static final int SPECTRAL_LINES = 8;
+    private static final int SPECTRAL_SAMPLES = 256;
+
+    private final Solum.Listener listener;
+    private volatile double frameRate = 30;
+    private volatile int burstLength = 1;
+    private volatile double jitterNanos = 0;
+    private volatile double lossProbability = 0;
+    private volatile int lossBurstLength = 1;
+    private volatile boolean rawFrames = false;
+    private volatile boolean spectralFrames = false;
+    private int width = 640;
+    private int height = 480;
+    private long seed = 42;
+    private RecordingReader replay;
+    private Thread thread;
+    private volatile boolean running = false;
+    private volatile long sentCount = 0;
+    private volatile long lostCount = 0;
+
+    public SyntheticProbe(Solum.Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Nominal number of frames per second.
+     */
+    public void setFrameRate(double framesPerSecond) {
+        if (framesPerSecond <= 0)
+            throw new IllegalArgumentException("frame rate must be positive");
+        frameRate = framesPerSecond;
+    }
+
+    /**
+     * Deliver frames in groups sent back to back at the start of each group period, 1 for regular delivery.
+     */
+    public void setBurstLength(int frames) {
+        burstLength = Math.max(1, frames);
+    }
+
+    /**
+     * Maximum random delivery delay added to each burst.
+     */
+    public void setJitterNanos(long nanos) {
+        jitterNanos = Math.max(0, nanos);
+    }
+
+    /**
+     * Drop frames: each frame starts a loss with the given probability, a loss drops burstLength frames in a row.
+     */
+    public void setLoss(double probability, int burstLength) {
+        lossProbability = Math.max(0, Math.min(1, probability));
+        lossBurstLength = Math.max(1, burstLength);
+    }
+
+    public void setRawFrames(boolean enabled) {
+        rawFrames = enabled;
+    }
+
+    public void setSpectralFrames(boolean enabled) {
+        spectralFrames = enabled;
+    }
+
+    /**
+     * Size of the synthetic images, taken into account on the next start.
+     */
+    public synchronized void setOutputSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Seed of the random generators, the same seed gives the same frames, jitter and losses.
+     */
+    public synchronized void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Replay the frames of a recording instead of synthetic ones, or null to go back to synthetic frames.
+     * Taken into account on the next start.
+     */
+    public synchronized void setReplay(RecordingReader recording) {
+        if (recording != null && recording.getFrameCount() == 0)
+            throw new IllegalArgumentException("empty recording");
+        replay = recording;
+    }
+
+    public long getSentCount() {
+        return sentCount;
+    }
+
+    public long getLostCount() {
+        return lostCount;
+    }
+
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Report the imaging as started, then send frames until stopped.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        final Generator generator = new Generator(width, height, seed, replay);
+        thread = new Thread(() -> run(generator), "SyntheticProbe");
+        thread.start();
+    }
+
+    /**
+     * Stop sending frames and report the imaging as stopped, waits for the last frame to be delivered.
+     */
+    public void stop() {
+        final Thread stopped;
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            stopped = thread;
+            thread = null;
+        }
+        LockSupport.unpark(stopped);
+        try {
+            stopped.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run(Generator generator) {
+        listener.imaging(ImagingState.ImagingReady, true);
+        final Random random = new Random(generator.seed + 1);
+        final long start = System.nanoTime();
+        long frame = 0;
+        int lossLeft = 0;
+        try {
+            while (running) {
+                final long period = (long) (1e9 / frameRate);
+                final int burst = burstLength;
+                // the burst is due when its first frame is
+                final long due = start + frame * period + (long) (random.nextDouble() * jitterNanos);
+                waitUntil(due);
+                for (int i = 0; i < burst && running; ++i, ++frame) {
+                    final long timestamp = start + frame * period;
+                    if (lossLeft == 0 && random.nextDouble() < lossProbability) {
+                        lossLeft = lossBurstLength;
+                    }
+                    if (lossLeft > 0) {
+                        --lossLeft;
+                        ++lostCount;
+                        continue;
+                    }
+                    generator.send(listener, timestamp, frame);
+                    ++sentCount;
+                }
+            }
+        } catch (IOException e) {
+            listener.error("Synthetic probe failed: " + e);
+        }
+        listener.imaging(ImagingState.ImagingReady, false);
+    }
+
+    private void waitUntil(long deadline) {
+        long remaining;
+        while (running && (remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    // Frame content, owned by the sending thread.
+    private final class Generator {
+        final int width;
+        final int height;
+        final long seed;
+        final RecordingReader replay;
+        final ByteBuffer image;
+        final byte[] speckle;
+        final byte[] row;
+        final ByteBuffer raw = ByteBuffer.allocateDirect(RAW_LINES * RAW_SAMPLES);
+        final ByteBuffer spectral = ByteBuffer.allocateDirect(SPECTRAL_LINES * SPECTRAL_SAMPLES);
+        final Random random;
+
+        Generator(int width, int height, long seed, RecordingReader replay) {
+            this.width = width;
+            this.height = height;
+            this.seed = seed;
+            this.replay = replay;
+            this.random = new Random(seed);
+            this.image = replay == null ? ByteBuffer.allocateDirect(width * height * 4) : null;
+            // twice the image height so that scrolling is a plain copy
+            this.speckle = new byte[width * height * 2];
+            random.nextBytes(speckle);
+            this.row = new byte[width * 4];
+        }
+
+        void send(Solum.Listener listener, long timestamp, long frame) throws IOException {
+            final PosInfo[] pos = imu(timestamp, frame);
+            if (replay != null) {
+                final RecordingReader.Frame recorded = replay.read((int) (frame % replay.getFrameCount()));
+                final FrameRecorder.Header h = recorded.header;
+                final ProcessedImageInfo info = new ProcessedImageInfo();
+                info.width = h.width;
+                info.height = h.height;
+                info.bitsPerPixel = h.bitsPerPixel;
+                info.micronsPerPixel = h.micronsPerPixel;
+                info.originX = h.originX;
+                info.originY = h.originY;
+                info.format = RecordingFormats.fromCode(h.format);
+                info.imageSize = recorded.data.remaining();
+                info.tm = timestamp;
+                listener.newProcessedImage(recorded.data, info, pos);
+            } else {
+                listener.newProcessedImage(image(frame), imageInfo(timestamp), pos);
+            }
+            if (rawFrames) {
+                listener.newRawImageFn(rawEnvelope(), rawInfo(timestamp), pos);
+            }
+            if (spectralFrames) {
+                listener.newSpectralImageFn(spectralBlock(frame), spectralInfo());
+            }
+        }
+
+        // Speckle scrolling down one row per frame, fading with depth.
+        ByteBuffer image(long frame) {
+            final int offset = (int) (frame % height) * width;
+            image.clear();
+            for (int y = 0; y < height; ++y) {
+                final int gain = 256 - 192 * y / height;
+                for (int x = 0; x < width; ++x) {
+                    final byte v = (byte) (((speckle[offset + y * width + x] & 0xff) * gain) >> 8);
+                    // RGBA byte order, as copied into ARGB_8888 bitmaps
+                    row[x * 4] = v;
+                    row[x * 4 + 1] = v;
+                    row[x * 4 + 2] = v;
+                    row[x * 4 + 3] = (byte) 0xff;
+                }
+                image.put(row);
+            }
+            image.flip();
+            return image;
+        }
+
+        ProcessedImageInfo imageInfo(long timestamp) {
+            final ProcessedImageInfo info = new ProcessedImageInfo();
+            info.width = width;
+            info.height = height;
+            info.bitsPerPixel = 32;
+            info.imageSize = width * height * 4;
+            info.micronsPerPixel = 100;
+            info.originX = width * 100 / 2.0;
+            info.originY = 0;
+            info.format = ImageFormat.Uncompressed;
+            info.tm = timestamp;
+            return info;
+        }
+
+        ByteBuffer rawEnvelope() {
+            raw.clear();
+            for (int i = 0; i < RAW_LINES * RAW_SAMPLES; ++i) {
+                raw.put((byte) random.nextInt(256));
+            }
+            raw.flip();
+            return raw;
+        }
+
+        RawImageInfo rawInfo(long timestamp) {
+            final RawImageInfo info = new RawImageInfo();
+            info.lines = RAW_LINES;
+            info.samples = RAW_SAMPLES;
+            info.bitsPerSample = 8;
+            info.axialSize = 100;
+            info.lateralSize = 300;
+            info.tm = timestamp;
+            return info;
+        }
+
+        // M-mode lines with a layer moving up and down.
+        ByteBuffer spectralBlock(long frame) {
+            spectral.clear();
+            for (int line = 0; line < SPECTRAL_LINES; ++line) {
+                final double phase = (frame * SPECTRAL_LINES + line) * 0.02;
+                final int layer = (int) (SPECTRAL_SAMPLES * (0.5 + 0.2 * Math.sin(phase)));
+                for (int i = 0; i < SPECTRAL_SAMPLES; ++i) {
+                    final int v = Math.abs(i - layer) < 6 ? 230 : random.nextInt(48);
+                    spectral.put((byte) v);
+                }
+            }
+            spectral.flip();
+            return spectral;
+        }
+
+        SpectralImageInfo spectralInfo() {
+            final SpectralImageInfo info = new SpectralImageInfo();
+            info.lines = SPECTRAL_LINES;
+            info.samples = SPECTRAL_SAMPLES;
+            info.bitsPerSample = 8;
+            info.period = 1 / (frameRate * SPECTRAL_LINES);
+            info.micronsPerSample = 150;
+            info.pw = false;
+            return info;
+        }
+
+        // A slow rotation around the elevation axis, sampled between the previous frame and this one.
+        PosInfo[] imu(long timestamp, long frame) {
+            final long period = (long) (1e9 / frameRate);
+            final PosInfo[] samples = new PosInfo[IMU_SAMPLES_PER_FRAME];
+            for (int i = 0; i < IMU_SAMPLES_PER_FRAME; ++i) {
+                final PosInfo pos = new PosInfo();
+                pos.tm = timestamp - period + (i + 1) * period / IMU_SAMPLES_PER_FRAME;
+                final double angle = 0.3 * Math.sin(pos.tm * 1e-9);
+                pos.qw = Math.cos(angle / 2);
+                pos.qx = Math.sin(angle / 2);
+                pos.az = 1;
+                samples[i] = pos;
+            }
+            return samples;
+        }
+    }
+}
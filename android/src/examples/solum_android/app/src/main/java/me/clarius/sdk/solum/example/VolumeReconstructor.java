@@ -0,0 +1,211 @@
+package me.clarius.sdk.solum.example;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Compound tracked 2D frames into a 3D voxel grid while sweeping.
+ * <p>
+ * The grid is a cube of n^3 voxels stored off-heap, n being chosen so the number of voxels stays within the budget.
+ * Each voxel holds the running mean of the pixels inserted into it and their count (saturated at 255).
+ * <p>
+ * Frames are placed using the probe orientation only: the pivot is the center of the probe face, the first frame
+ * defines the volume axes (x lateral, y elevation, z depth). A pixel at column c and row r of an image is at
+ * (c * micronsPerPixel - originX, r * micronsPerPixel - originY) in the image plane, in microns.
+ * <p>
+ * Insertion is split in row stripes across threads; neighbouring stripes touching the same voxel may lose an
+ * update, which is negligible for compounding. Pixels are subsampled when voxels are larger than pixels.
+ * Filling empty voxels is deferred to fillHoles(), typically called once the sweep is done.
+ */
+
+public class VolumeReconstructor {
+    private final ParallelStripes stripes;
+    private final int size;
+    private final double voxelMicrons;
+    private final ByteBuffer values;
+    private final ByteBuffer counts;
+    private final InsertTask insertTask = new InsertTask();
+    private final FillTask fillTask = new FillTask();
+    private boolean hasReference = false;
+    // conjugate of the first frame orientation
+    private double rw, rx, ry, rz;
+    private long insertedFrames = 0;
+
+    /**
+     * @param stripes      threads used to insert frames.
+     * @param voxelBudget  maximum number of voxels, two bytes are allocated per voxel.
+     * @param extentMicrons side of the reconstructed cube.
+     */
+    public VolumeReconstructor(ParallelStripes stripes, long voxelBudget, double extentMicrons) {
+        if (voxelBudget < 8 || extentMicrons <= 0)
+            throw new IllegalArgumentException("invalid volume settings");
+        this.stripes = stripes;
+        int n = (int) Math.floor(Math.cbrt((double) voxelBudget));
+        while ((long) n * n * n > Math.min(voxelBudget, Integer.MAX_VALUE)) {
+            --n;
+        }
+        this.size = n;
+        this.voxelMicrons = extentMicrons / n;
+        this.values = ByteBuffer.allocateDirect(n * n * n);
+        this.counts = ByteBuffer.allocateDirect(n * n * n);
+    }
+
+    /**
+     * Number of voxels along each axis.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    public double getVoxelMicrons() {
+        return voxelMicrons;
+    }
+
+    public synchronized long getInsertedFrames() {
+        return insertedFrames;
+    }
+
+    /**
+     * Voxel values, x varying fastest then y then z; read-only view.
+     */
+    public ByteBuffer getValues() {
+        return values.asReadOnlyBuffer();
+    }
+
+    /**
+     * Empty the volume, the next frame defines the axes again.
+     */
+    public synchronized void clear() {
+        for (int i = 0, total = size * size * size; i < total; ++i) {
+            values.put(i, (byte) 0);
+            counts.put(i, (byte) 0);
+        }
+        hasReference = false;
+        insertedFrames = 0;
+    }
+
+    /**
+     * Insert a frame.
+     *
+     * @param argb       width * height pixels, the gray level is read from the green channel.
+     * @param quaternion probe orientation w, x, y, z at the frame time.
+     */
+    public synchronized void insert(int[] argb, int width, int height, double micronsPerPixel,
+                                    double originX, double originY, double[] quaternion) {
+        double qw = quaternion[0], qx = quaternion[1], qy = quaternion[2], qz = quaternion[3];
+        if (!hasReference) {
+            hasReference = true;
+            rw = qw;
+            rx = -qx;
+            ry = -qy;
+            rz = -qz;
+        }
+        // orientation relative to the first frame: conj(q0) * q
+        final double w = rw * qw - rx * qx - ry * qy - rz * qz;
+        final double x = rw * qx + rx * qw + ry * qz - rz * qy;
+        final double y = rw * qy - rx * qz + ry * qw + rz * qx;
+        final double z = rw * qz + rx * qy - ry * qx + rz * qw;
+        final InsertTask t = insertTask;
+        // rotated image axes: lateral is (1, 0, 0), depth is (0, 0, 1) in the probe frame
+        t.colX = 1 - 2 * (y * y + z * z);
+        t.colY = 2 * (x * y + w * z);
+        t.colZ = 2 * (x * z - w * y);
+        t.rowX = 2 * (x * z + w * y);
+        t.rowY = 2 * (y * z - w * x);
+        t.rowZ = 1 - 2 * (x * x + y * y);
+        t.step = Math.max(1, (int) (voxelMicrons / micronsPerPixel / 2));
+        t.micronsPerPixel = micronsPerPixel;
+        t.originX = originX;
+        t.originY = originY;
+        t.argb = argb;
+        t.width = width;
+        try {
+            stripes.run(t, (height + t.step - 1) / t.step);
+        } finally {
+            t.argb = null;
+        }
+        ++insertedFrames;
+    }
+
+    /**
+     * Give empty voxels the mean of the non-empty voxels within the radius (in voxels).
+     * Filled voxels stay marked as empty so they are replaced by later insertions and not used as sources.
+     */
+    public synchronized void fillHoles(int radius) {
+        fillTask.radius = Math.max(1, radius);
+        stripes.run(fillTask, size);
+    }
+
+    // Reused for every frame to avoid allocating a task.
+    private final class InsertTask implements ParallelStripes.Task {
+        double colX, colY, colZ, rowX, rowY, rowZ;
+        int step;
+        double micronsPerPixel;
+        double originX, originY;
+        int[] argb;
+        int width;
+
+        @Override
+        public void run(int begin, int end) {
+            final double half = size * voxelMicrons / 2;
+            final double scale = 1 / voxelMicrons;
+            for (int r = begin * step, rowEnd = end * step; r < rowEnd; r += step) {
+                final double v = r * micronsPerPixel - originY;
+                for (int c = 0; c < width; c += step) {
+                    final double u = c * micronsPerPixel - originX;
+                    final int ix = (int) Math.floor((u * colX + v * rowX + half) * scale);
+                    final int iy = (int) Math.floor((u * colY + v * rowY + half) * scale);
+                    final int iz = (int) Math.floor((u * colZ + v * rowZ) * scale);
+                    if (ix < 0 || iy < 0 || iz < 0 || ix >= size || iy >= size || iz >= size) {
+                        continue;
+                    }
+                    final int p = r * width + c;
+                    if (p >= argb.length) {
+                        return;
+                    }
+                    final int sample = (argb[p] >> 8) & 0xff;
+                    final int voxel = (iz * size + iy) * size + ix;
+                    final int count = counts.get(voxel) & 0xff;
+                    final int mean = values.get(voxel) & 0xff;
+                    values.put(voxel, (byte) (mean + (sample - mean) / (count + 1)));
+                    if (count < 255) {
+                        counts.put(voxel, (byte) (count + 1));
+                    }
+                }
+            }
+        }
+    }
+
+    private final class FillTask implements ParallelStripes.Task {
+        int radius;
+
+        @Override
+        public void run(int begin, int end) {
+            for (int z = begin; z < end; ++z) {
+                for (int y = 0; y < size; ++y) {
+                    for (int x = 0; x < size; ++x) {
+                        final int voxel = (z * size + y) * size + x;
+                        if (counts.get(voxel) != 0) {
+                            continue;
+                        }
+                        int sum = 0;
+                        int n = 0;
+                        for (int k = Math.max(0, z - radius); k <= Math.min(size - 1, z + radius); ++k) {
+                            for (int j = Math.max(0, y - radius); j <= Math.min(size - 1, y + radius); ++j) {
+                                for (int i = Math.max(0, x - radius); i <= Math.min(size - 1, x + radius); ++i) {
+                                    final int neighbour = (k * size + j) * size + i;
+                                    if (counts.get(neighbour) != 0) {
+                                        sum += values.get(neighbour) & 0xff;
+                                        ++n;
+                                    }
+                                }
+                            }
+                        }
+                        if (n > 0) {
+                            values.put(voxel, (byte) (sum / n));
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
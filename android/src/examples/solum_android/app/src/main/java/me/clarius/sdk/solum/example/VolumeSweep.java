@@ -0,0 +1,112 @@
+package me.clarius.sdk.solum.example;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import me.clarius.sdk.ProcessedImageInfo;
+
+/**
+ * Feed decoded frames and their orientation into a volume reconstructor during a sweep.
+ * <p>
+ * The frame pixels are copied on the calling thread, then inserted on the executor.
+ * Only one frame is inserted at a time: frames arriving while the previous one is being inserted are skipped,
+ * so the sweep never holds back the live image. Frames without IMU data for their timestamp are skipped too.
+ */
+
+public class VolumeSweep {
+    private static final String TAG = "VolumeSweep";
+    private static final int FILL_RADIUS = 2;
+    private final Executor executor;
+    private final ImuRing imu;
+    private final VolumeReconstructor reconstructor;
+    private final AtomicBoolean busy = new AtomicBoolean(false);
+    private final AtomicLong skipped = new AtomicLong();
+    private final InsertTask insertTask = new InsertTask();
+    private volatile boolean sweeping = false;
+
+    public VolumeSweep(Executor executor, ImuRing imu, VolumeReconstructor reconstructor) {
+        this.executor = executor;
+        this.imu = imu;
+        this.reconstructor = reconstructor;
+    }
+
+    public VolumeReconstructor getReconstructor() {
+        return reconstructor;
+    }
+
+    /**
+     * Start a new sweep (clearing the volume), or stop it and fill the holes.
+     */
+    public void setSweeping(boolean enabled) {
+        if (enabled == sweeping) {
+            return;
+        }
+        sweeping = enabled;
+        executor.execute(() -> {
+            if (enabled) {
+                reconstructor.clear();
+            } else {
+                reconstructor.fillHoles(FILL_RADIUS);
+                Log.d(TAG, "Sweep done, frames: " + reconstructor.getInsertedFrames() + ", skipped: " + skipped.get());
+            }
+        });
+    }
+
+    public boolean isSweeping() {
+        return sweeping;
+    }
+
+    /**
+     * Offer a frame, the bitmap is only read during the call.
+     */
+    public void offer(Bitmap bitmap, ProcessedImageInfo info) {
+        if (!sweeping) {
+            return;
+        }
+        if (!busy.compareAndSet(false, true)) {
+            skipped.incrementAndGet();
+            return;
+        }
+        // the task is owned by this thread until it is executed
+        final InsertTask task = insertTask;
+        if (!imu.orientationAt(info.tm, task.quaternion)) {
+            skipped.incrementAndGet();
+            busy.set(false);
+            return;
+        }
+        task.width = bitmap.getWidth();
+        task.height = bitmap.getHeight();
+        if (task.pixels.length < task.width * task.height) {
+            task.pixels = new int[task.width * task.height];
+        }
+        bitmap.getPixels(task.pixels, 0, task.width, 0, 0, task.width, task.height);
+        task.micronsPerPixel = info.micronsPerPixel;
+        task.originX = info.originX;
+        task.originY = info.originY;
+        executor.execute(task);
+    }
+
+    // Reused for every frame to avoid allocating a task.
+    private final class InsertTask implements Runnable {
+        final double[] quaternion = new double[4];
+        int[] pixels = new int[0];
+        int width;
+        int height;
+        double micronsPerPixel;
+        double originX;
+        double originY;
+
+        @Override
+        public void run() {
+            try {
+                reconstructor.insert(pixels, width, height, micronsPerPixel, originX, originY, quaternion);
+            } finally {
+                busy.set(false);
+            }
+        }
+    }
+}
@@ -6,6 +6,8 @@ import android.net.MacAddress;
 import android.net.Network;
 import android.net.NetworkCapabilities;
 import android.net.NetworkRequest;
+import android.net.TransportInfo;
+import android.net.wifi.WifiInfo;
 import android.net.wifi.WifiNetworkSpecifier;
 import android.os.Build;
 import android.util.Log;
@@ -20,6 +22,7 @@ import java.util.Optional;
 
 public class WifiAutoJoin {
     private static final String TAG = "SolumAutoJoin";
+    private static final String REDACTED_BSSID = "02:00:00:00:00:00";
     private MyCallback callback;
 
     /**
@@ -50,7 +53,10 @@ public class WifiAutoJoin {
             connectivityManager.unregisterNetworkCallback(callback);
             callback = null;
         }
-        callback = new MyCallback(ssid, result);
+        // the BSSID is only reported with the location permission, and from API 31 if the callback asks for it
+        callback = Build.VERSION.SDK_INT >= Build.VERSION_CODES.S
+                ? new MyCallback(ssid, result, ConnectivityManager.NetworkCallback.FLAG_INCLUDE_LOCATION_INFO)
+                : new MyCallback(ssid, result);
         WifiNetworkSpecifier.Builder specifierBuilder = new WifiNetworkSpecifier.Builder()
                 .setSsid(ssid)
                 .setWpa2Passphrase(passphrase);
@@ -67,11 +73,26 @@ public class WifiAutoJoin {
     @FunctionalInterface
     public interface Result {
         void accept(final boolean result, final String ssid, Optional<Long> networkID);
+
+        /**
+         * The BSSID of the joined network, pass it to the next join to bypass user approval.
+         * Only reported when Android does not redact it, which requires the ACCESS_FINE_LOCATION permission.
+         */
+        default void onBssid(final String ssid, final String bssid) {
+        }
+
+        /**
+         * The network was lost, Android joins it again when it comes back and calls accept() again.
+         */
+        default void onLost(final String ssid) {
+        }
     }
 
+    @RequiresApi(api = Build.VERSION_CODES.Q)
     private static final class MyCallback extends ConnectivityManager.NetworkCallback {
         private final String ssid;
         private final Result result;
+        private String bssid;
 
         MyCallback(final String ssid, final Result result) {
             Log.i(TAG, "Requesting connection to network: " + ssid);
@@ -79,6 +100,14 @@ public class WifiAutoJoin {
             this.result = result;
         }
 
+        @RequiresApi(api = Build.VERSION_CODES.S)
+        MyCallback(final String ssid, final Result result, int flags) {
+            super(flags);
+            Log.i(TAG, "Requesting connection to network: " + ssid);
+            this.ssid = ssid;
+            this.result = result;
+        }
+
         @Override
         public void onAvailable(Network network) {
             Log.i(TAG, "Successfully connected to network: " + ssid + " with network ID: " + network.getNetworkHandle());
@@ -88,6 +117,20 @@ public class WifiAutoJoin {
         @Override
         public void onCapabilitiesChanged(Network network, NetworkCapabilities networkCapabilities) {
             Log.d(TAG, "Network " + ssid + " capabilities changed to " + networkCapabilities.toString());
+            final TransportInfo info = networkCapabilities.getTransportInfo();
+            if (info instanceof WifiInfo) {
+                final String reported = ((WifiInfo) info).getBSSID();
+                if (reported != null && !REDACTED_BSSID.equals(reported) && !reported.equals(bssid)) {
+                    bssid = reported;
+                    result.onBssid(ssid, bssid);
+                }
+            }
+        }
+
+        @Override
+        public void onLost(Network network) {
+            Log.i(TAG, "Lost network: " + ssid);
+            result.onLost(ssid);
         }
 
         @Override
@@ -1,18 +1,32 @@
 package me.clarius.sdk.solum.example;
 
+import android.util.Log;
+
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import me.clarius.sdk.Solum;
 
 public class WorkflowViewModel extends ViewModel {
+    private static final String TAG = "Workflow";
     private final MutableLiveData<List<String>> applications = new MutableLiveData<>();
     private final MutableLiveData<List<String>> probes = new MutableLiveData<>();
     private final MutableLiveData<String> selectedApplication = new MutableLiveData<>();
     private final MutableLiveData<String> selectedProbe = new MutableLiveData<>();
+    // The catalog and the lists last posted are only accessed from this executor.
+    private final ExecutorService catalogExecutor = Executors.newSingleThreadExecutor();
+    private CatalogCache catalog;
+    private List<String> postedProbes;
+    private List<String> postedApplications;
+    private String postedApplicationsProbe;
 
     public MutableLiveData<List<String>> getApplications() {
         return applications;
@@ -30,12 +44,70 @@ public class WorkflowViewModel extends ViewModel {
         return selectedProbe;
     }
 
+    /**
+     * Show the probes and applications cached on disk until the probe answers.
+     *
+     * @param loaded called once the catalog is loaded, or failed to load.
+     */
+    public void loadCatalog(File directory, Runnable loaded) {
+        catalogExecutor.execute(() -> {
+            // already loaded if the view is recreated
+            if (catalog == null) {
+                try {
+                    catalog = new CatalogCache(directory);
+                    Log.d(TAG, "Catalog loaded for firmware " + catalog.getFirmwareVersion());
+                    postProbes(catalog.getProbes());
+                } catch (IOException e) {
+                    Log.e(TAG, "Cannot load the catalog: " + e);
+                }
+            }
+            loaded.run();
+        });
+    }
+
+    /**
+     * Switch to the catalog of the connected firmware.
+     */
+    public void setFirmwareVersion(String version) {
+        catalogExecutor.execute(() -> {
+            try {
+                if (catalog != null && catalog.setFirmwareVersion(version)) {
+                    postProbes(catalog.getProbes());
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot load the catalog: " + e);
+            }
+        });
+    }
+
+    /**
+     * Show the applications of a probe cached on disk, does not need Solum.
+     */
+    public void showCachedApplications(String probe) {
+        catalogExecutor.execute(() -> {
+            if (catalog != null && probe != null) {
+                postApplications(probe, catalog.getApplications(probe));
+            }
+        });
+    }
+
+    /**
+     * Ask the probe applications to Solum, must be called once Solum is initialized.
+     */
     public void refreshApplications(Solum solum, String probe) {
-        solum.getApplications(probe, result -> applications.postValue(Arrays.asList(result)));
+        solum.getApplications(probe, result -> catalogExecutor.execute(() -> {
+            final List<String> list = Arrays.asList(result);
+            store(() -> catalog.putApplications(probe, list));
+            postApplications(probe, list);
+        }));
     }
 
     public void refreshProbes(Solum solum) {
-        solum.getProbes(result -> probes.postValue(Arrays.asList(result)));
+        solum.getProbes(result -> catalogExecutor.execute(() -> {
+            final List<String> list = Arrays.asList(result);
+            store(() -> catalog.putProbes(list));
+            postProbes(list);
+        }));
     }
 
     public void selectProbe(final String probe) {
@@ -46,4 +118,40 @@ public class WorkflowViewModel extends ViewModel {
     public void selectApplication(final String application) {
         selectedApplication.postValue(application);
     }
+
+    @Override
+    protected void onCleared() {
+        catalogExecutor.shutdown();
+    }
+
+    // Only post lists that differ from the last ones, so that observers do not reset the selection for nothing.
+    private void postProbes(List<String> list) {
+        if (list != null && !list.equals(postedProbes)) {
+            postedProbes = list;
+            probes.postValue(list);
+        }
+    }
+
+    private void postApplications(String probe, List<String> list) {
+        if (list != null && (!list.equals(postedApplications) || !Objects.equals(probe, postedApplicationsProbe))) {
+            postedApplications = list;
+            postedApplicationsProbe = probe;
+            applications.postValue(list);
+        }
+    }
+
+    private void store(CatalogUpdate update) {
+        if (catalog == null) {
+            return;
+        }
+        try {
+            update.run();
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot save the catalog: " + e);
+        }
+    }
+
+    private interface CatalogUpdate {
+        void run() throws IOException;
+    }
 }
@@ -0,0 +1,115 @@
+package me.clarius.sdk.solum.example;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Record frames as the app does, then read them back with RecordingReader.
+ */
+
+public class FrameRecorderTest {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final int FRAME_SIZE = WIDTH * HEIGHT * 4;
+    // same settings as the app
+    private static final long SEGMENT_SIZE = 256L * 1024 * 1024;
+    private static final int BACKLOG_FRAMES = 60;
+    private static final long FRAME_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(1) / 30;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recordsUncompressedFramesAtFrameRateWithoutDrops() throws IOException {
+        final int frames = 300;
+        final File directory = new File(folder.getRoot(), "recording");
+        final ByteBuffer frame = ByteBuffer.allocateDirect(FRAME_SIZE);
+        final FrameRecorder recorder = new FrameRecorder(directory, SEGMENT_SIZE, BACKLOG_FRAMES);
+        try (FrameRecorder open = recorder) {
+            long next = System.nanoTime();
+            for (int i = 0; i < frames; ++i) {
+                LockSupport.parkNanos(next - System.nanoTime());
+                next += FRAME_PERIOD_NANOS;
+                fill(frame, i);
+                open.record(header(i, FRAME_SIZE), frame);
+            }
+        }
+        // closing waits for the pending frames to be written
+        assertEquals("dropped frames", 0, recorder.getDroppedCount());
+        assertEquals(frames, recorder.getRecordedCount());
+        try (RecordingReader reader = new RecordingReader(directory)) {
+            assertEquals(frames, reader.getFrameCount());
+            for (int i = 0; i < frames; ++i) {
+                checkFrame(reader.read(i), i, FRAME_SIZE);
+            }
+        }
+    }
+
+    @Test
+    public void findsFramesAcrossSegmentsByTimestamp() throws IOException {
+        final int frames = 50;
+        final int size = 1000;
+        final File directory = new File(folder.getRoot(), "segments");
+        final ByteBuffer frame = ByteBuffer.allocate(size);
+        // a few frames per segment, a frame never spans two segments
+        try (FrameRecorder recorder = new FrameRecorder(directory, 3 * (FrameRecorder.FRAME_HEADER_SIZE + size) + 10, frames)) {
+            for (int i = 0; i < frames; ++i) {
+                fill(frame, i);
+                recorder.record(header(i, size), frame);
+            }
+        }
+        try (RecordingReader reader = new RecordingReader(directory)) {
+            assertEquals(frames, reader.getFrameCount());
+            for (int i = 0; i < frames; ++i) {
+                assertEquals(i, reader.frameAt(timestamp(i)));
+                assertEquals(i, reader.frameAt(timestamp(i) + FRAME_PERIOD_NANOS / 2));
+                checkFrame(reader.read(i), i, size);
+            }
+            assertEquals(0, reader.frameAt(timestamp(0) - 1));
+            final int[] replayed = {0};
+            reader.replay(timestamp(10), timestamp(19), recorded -> ++replayed[0]);
+            assertEquals(10, replayed[0]);
+        }
+    }
+
+    private static long timestamp(int frame) {
+        return 1_000_000_000L + frame * FRAME_PERIOD_NANOS;
+    }
+
+    private static FrameRecorder.Header header(int frame, int size) {
+        return new FrameRecorder.Header(timestamp(frame), FrameRecorder.FORMAT_UNCOMPRESSED, WIDTH, HEIGHT, 32,
+                100, WIDTH * 50.0, 0, size);
+    }
+
+    // The frame number in every int, so a frame read at the wrong position or torn is detected.
+    private static void fill(ByteBuffer frame, int number) {
+        frame.clear();
+        while (frame.remaining() >= 4) {
+            frame.putInt(number);
+        }
+        frame.flip();
+    }
+
+    private static void checkFrame(RecordingReader.Frame recorded, int number, int size) {
+        final FrameRecorder.Header h = recorded.header;
+        assertEquals(timestamp(number), h.timestamp);
+        assertEquals(FrameRecorder.FORMAT_UNCOMPRESSED, h.format);
+        assertEquals(WIDTH, h.width);
+        assertEquals(HEIGHT, h.height);
+        assertEquals(size, h.length);
+        assertEquals(size, recorded.data.remaining());
+        for (int i = 0; i + 4 <= size; i += 4096) {
+            assertEquals("frame " + number + " at " + i, number, recorded.data.getInt(recorded.data.position() + i));
+        }
+        assertEquals(number, recorded.data.getInt(recorded.data.limit() - 4));
+    }
+}
@@ -0,0 +1,45 @@
+package me.clarius.sdk.solum.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Copy of a frame into a pooled buffer, as done by the converters, from heap and direct sources.
+ */
+
+@State(Scope.Benchmark)
+public class FrameBufferPoolBenchmark {
+    private static final long SEED = 42;
+
+    @Param({"307200", "1228800", "8294400"})
+    public int frameSize;
+
+    @Param({"heap", "direct"})
+    public String source;
+
+    private FrameBufferPool pool;
+    private ByteBuffer frame;
+
+    @Setup
+    public void setUp() {
+        pool = new FrameBufferPool(4, frameSize);
+        final byte[] data = new byte[frameSize];
+        new Random(SEED).nextBytes(data);
+        frame = "direct".equals(source) ? ByteBuffer.allocateDirect(frameSize) : ByteBuffer.allocate(frameSize);
+        frame.put(data).flip();
+    }
+
+    @Benchmark
+    public int copyAndRelease() {
+        final ByteBuffer copy = pool.copyOf(frame, frameSize);
+        final int size = copy.remaining();
+        pool.release(copy);
+        return size;
+    }
+}
@@ -0,0 +1,42 @@
+package me.clarius.sdk.solum.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Cost of recording latencies, alone and contended, which must stay negligible next to the frame processing.
+ */
+
+@State(Scope.Benchmark)
+public class LatencyHistogramBenchmark {
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final LatencyTracker tracker = new LatencyTracker(64);
+
+    @State(Scope.Thread)
+    public static class Clock {
+        long timestamp = 1;
+    }
+
+    @Benchmark
+    public void record(Clock clock) {
+        histogram.record((clock.timestamp++ & 0xffff) * 1000);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordContended(Clock clock) {
+        histogram.record((clock.timestamp++ & 0xffff) * 1000);
+    }
+
+    @Benchmark
+    public void trackFrame(Clock clock) {
+        final long timestamp = clock.timestamp++;
+        tracker.onReceived(timestamp);
+        tracker.onDecodeStarted(timestamp);
+        tracker.onDecodeFinished(timestamp);
+        tracker.onPresented(timestamp);
+        tracker.onDisplayed(timestamp);
+    }
+}
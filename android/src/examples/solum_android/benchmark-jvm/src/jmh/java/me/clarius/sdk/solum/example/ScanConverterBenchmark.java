@@ -0,0 +1,80 @@
+package me.clarius.sdk.solum.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * Scan conversion and RF envelope detection of synthetic frames, for linear and curved probes.
+ */
+
+@State(Scope.Benchmark)
+public class ScanConverterBenchmark {
+    private static final long SEED = 42;
+    private static final int LINES = 192;
+    private static final int SAMPLES = 512;
+
+    @Param({"640x480", "1280x960"})
+    public String outputSize;
+
+    @Param({"0", "45000"})
+    public double radiusMicrons;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private ParallelStripes stripes;
+    private ScanConverter converter;
+    private RfProcessor rfProcessor;
+    private ScanConverter.Geometry geometry;
+    private byte[] envelope;
+    private ByteBuffer rf;
+    private int[] argb;
+
+    @Setup
+    public void setUp() {
+        final String[] size = outputSize.split("x");
+        final int width = Integer.parseInt(size[0]);
+        final int height = Integer.parseInt(size[1]);
+        stripes = new ParallelStripes(threads);
+        converter = new ScanConverter(stripes, 2);
+        rfProcessor = new RfProcessor(stripes);
+        geometry = new ScanConverter.Geometry(LINES, SAMPLES, 150, 300, radiusMicrons, width, height);
+        final Random random = new Random(SEED);
+        envelope = new byte[LINES * SAMPLES];
+        random.nextBytes(envelope);
+        rf = ByteBuffer.allocateDirect(LINES * SAMPLES * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < LINES * SAMPLES; ++i) {
+            rf.putShort((short) (random.nextGaussian() * 2000));
+        }
+        rf.flip();
+        argb = new int[width * height];
+        // build the lookup table outside of the measurement
+        converter.convert(geometry, envelope, argb);
+    }
+
+    @TearDown
+    public void tearDown() {
+        stripes.close();
+    }
+
+    @Benchmark
+    public int[] scanConvert() {
+        converter.convert(geometry, envelope, argb);
+        return argb;
+    }
+
+    @Benchmark
+    public void rfEnvelope(Blackhole blackhole) {
+        rfProcessor.process(rf, LINES, SAMPLES, 16, envelope);
+        blackhole.consume(envelope);
+    }
+}
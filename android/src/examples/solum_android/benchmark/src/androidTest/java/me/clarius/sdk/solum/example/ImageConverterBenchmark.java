@@ -0,0 +1,143 @@
+package me.clarius.sdk.solum.example;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import me.clarius.sdk.ImageFormat;
+import me.clarius.sdk.ProcessedImageInfo;
+
+/**
+ * Convert synthetic frames through ImageConverter, on the benchmark thread, for common output sizes.
+ * <p>
+ * Frames are a speckle-like pattern generated from a fixed seed so every run converts the same data.
+ */
+
+@RunWith(Parameterized.class)
+public class ImageConverterBenchmark {
+    private static final long SEED = 42;
+    private static final int JPEG_QUALITY = 90;
+
+    @Rule
+    public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final int width;
+    private final int height;
+    private final BitmapPool bitmapPool = new BitmapPool(64L * 1024 * 1024);
+    private ImageConverter converter;
+    private ByteBuffer jpeg;
+    private ByteBuffer pixelsHeap;
+    private ByteBuffer pixelsDirect;
+    private ProcessedImageInfo jpegInfo;
+    private ProcessedImageInfo pixelsInfo;
+
+    public ImageConverterBenchmark(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    @Parameterized.Parameters(name = "{0}x{1}")
+    public static Collection<Object[]> sizes() {
+        return Arrays.asList(new Object[][]{{640, 480}, {1024, 768}, {1280, 960}, {1920, 1080}});
+    }
+
+    @Before
+    public void setUp() {
+        Bitmap frame = syntheticFrame(width, height);
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        frame.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, encoded);
+        jpeg = ByteBuffer.allocateDirect(encoded.size());
+        jpeg.put(encoded.toByteArray()).flip();
+        jpegInfo = info(ImageFormat.Jpeg, jpeg.remaining());
+
+        pixelsDirect = ByteBuffer.allocateDirect(width * height * 4);
+        frame.copyPixelsToBuffer(pixelsDirect);
+        pixelsDirect.flip();
+        pixelsHeap = ByteBuffer.allocate(width * height * 4);
+        pixelsHeap.put(pixelsDirect.duplicate()).flip();
+        pixelsInfo = info(ImageFormat.Uncompressed, pixelsDirect.remaining());
+
+        converter = new ImageConverter(Runnable::run, ImageConverter.Mode.QUEUE, bitmapPool,
+                new ImageConverter.Callback() {
+                    @Override
+                    public void onResult(Bitmap bitmap, ProcessedImageInfo info) {
+                        bitmapPool.release(bitmap);
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                        throw new AssertionError(e);
+                    }
+                });
+    }
+
+    @Test
+    public void decodeJpeg() {
+        run(jpeg, jpegInfo);
+    }
+
+    @Test
+    public void copyUncompressedFromDirectBuffer() {
+        run(pixelsDirect, pixelsInfo);
+    }
+
+    @Test
+    public void copyUncompressedFromHeapBuffer() {
+        run(pixelsHeap, pixelsInfo);
+    }
+
+    private void run(ByteBuffer frame, ProcessedImageInfo info) {
+        final BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            converter.convertImage(frame, info);
+        }
+    }
+
+    private ProcessedImageInfo info(ImageFormat format, int size) {
+        ProcessedImageInfo info = new ProcessedImageInfo();
+        info.width = width;
+        info.height = height;
+        info.bitsPerPixel = 32;
+        info.imageSize = size;
+        info.format = format;
+        info.micronsPerPixel = 100;
+        return info;
+    }
+
+    // Noisy gray levels fading with depth, roughly as hard to compress as an ultrasound image.
+    private static Bitmap syntheticFrame(int width, int height) {
+        final Random random = new Random(SEED);
+        final int[] pixels = new int[width * height];
+        for (int y = 0; y < height; ++y) {
+            final int level = 255 - 200 * y / height;
+            for (int x = 0; x < width; ++x) {
+                final int v = random.nextInt(level + 1);
+                pixels[y * width + x] = Color.argb(255, v, v, v);
+            }
+        }
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+        // a bright structure
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint();
+        paint.setColor(Color.WHITE);
+        canvas.drawCircle(width / 2f, height / 3f, height / 10f, paint);
+        return bitmap;
+    }
+}